@@ -0,0 +1,107 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.Objects;
+
+/**
+ * Identifies the connections that can be shared through a {@link StardogClientService} pool. Two processors may reuse
+ * each other's connections only when they connect to the same endpoint, as the same principal and with the same
+ * reasoning settings. When the client service balances reads across the nodes of a cluster, each node has its own
+ * pool, identified by the server of the node.
+ */
+public final class ConnectionKey {
+
+	private final String mConnectionURL;
+
+	private final String mPrincipal;
+
+	private final boolean mReasoning;
+
+	private final String mSchema;
+
+	private final String mServer;
+
+	/**
+	 * @param connectionURL the connection string overriding the one of the client service, or {@code null} to use the
+	 *                      client service's connection string
+	 * @param principal     the principal overriding the credentials of the client service, or {@code null} to use the
+	 *                      client service's credentials
+	 */
+	public ConnectionKey(String connectionURL, String principal) {
+		this(connectionURL, principal, false, null, null);
+	}
+
+	private ConnectionKey(String connectionURL, String principal, boolean reasoning, String schema, String server) {
+		mConnectionURL = connectionURL;
+		mPrincipal = principal;
+		mReasoning = reasoning;
+		mSchema = schema;
+		mServer = server;
+	}
+
+	public ConnectionKey withReasoning(boolean reasoning, String schema) {
+		return new ConnectionKey(mConnectionURL, mPrincipal, reasoning, reasoning ? schema : null, mServer);
+	}
+
+	/**
+	 * @param server the server of the cluster node the connections are opened to, or {@code null} for the server of
+	 *               the connection string
+	 */
+	public ConnectionKey withServer(String server) {
+		return new ConnectionKey(mConnectionURL, mPrincipal, mReasoning, mSchema, server);
+	}
+
+	public String getConnectionURL() {
+		return mConnectionURL;
+	}
+
+	public String getPrincipal() {
+		return mPrincipal;
+	}
+
+	public boolean isReasoning() {
+		return mReasoning;
+	}
+
+	public String getSchema() {
+		return mSchema;
+	}
+
+	public String getServer() {
+		return mServer;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ConnectionKey)) {
+			return false;
+		}
+		ConnectionKey that = (ConnectionKey) o;
+		return mReasoning == that.mReasoning &&
+		       Objects.equals(mConnectionURL, that.mConnectionURL) &&
+		       Objects.equals(mPrincipal, that.mPrincipal) &&
+		       Objects.equals(mSchema, that.mSchema) &&
+		       Objects.equals(mServer, that.mServer);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(mConnectionURL, mPrincipal, mReasoning, mSchema, mServer);
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionKey{url=" + mConnectionURL +
+		       ", principal=" + mPrincipal +
+		       ", reasoning=" + mReasoning +
+		       (mSchema == null ? "" : ", schema=" + mSchema) +
+		       (mServer == null ? "" : ", server=" + mServer) +
+		       "}";
+	}
+}
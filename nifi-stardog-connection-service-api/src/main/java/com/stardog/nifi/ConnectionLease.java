@@ -0,0 +1,62 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.complexible.stardog.api.Connection;
+
+/**
+ * A {@link Connection} that is handed to a processor for the duration of a single unit of work. Closing the lease
+ * returns the connection to the pool it was borrowed from, or closes the connection if it was not pooled.
+ */
+public class ConnectionLease implements AutoCloseable {
+
+	private final Connection mConnection;
+
+	private final Consumer<ConnectionLease> mReleaser;
+
+	private volatile boolean mInvalid;
+
+	private final AtomicBoolean mReleased = new AtomicBoolean();
+
+	public ConnectionLease(Connection connection, Consumer<ConnectionLease> releaser) {
+		mConnection = connection;
+		mReleaser = releaser;
+	}
+
+	/**
+	 * Creates a lease for a connection that is not pooled. Closing the lease closes the connection.
+	 */
+	public static ConnectionLease unpooled(Connection connection) {
+		return new ConnectionLease(connection, lease -> lease.get().close());
+	}
+
+	public Connection get() {
+		return mConnection;
+	}
+
+	/**
+	 * Marks the connection as unusable so that it is discarded, rather than reused, when the lease is closed.
+	 */
+	public void invalidate() {
+		mInvalid = true;
+	}
+
+	public boolean isInvalid() {
+		return mInvalid;
+	}
+
+	/**
+	 * Returns the connection to its pool, once even if the lease is closed by several threads at the same time.
+	 */
+	@Override
+	public void close() {
+		if (mReleased.compareAndSet(false, true)) {
+			mReleaser.accept(this);
+		}
+	}
+}
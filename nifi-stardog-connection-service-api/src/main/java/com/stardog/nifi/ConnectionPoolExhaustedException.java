@@ -0,0 +1,20 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+/**
+ * Thrown when a connection cannot be borrowed from a {@link StardogClientService} pool because all of its connections
+ * are in use and none was returned within the configured wait time.
+ */
+public class ConnectionPoolExhaustedException extends RuntimeException {
+
+	public ConnectionPoolExhaustedException(String message) {
+		super(message);
+	}
+
+	public ConnectionPoolExhaustedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
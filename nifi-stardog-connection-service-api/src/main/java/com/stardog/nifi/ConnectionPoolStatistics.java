@@ -0,0 +1,100 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+/**
+ * A point-in-time snapshot of the connection pools of a {@link StardogClientService}. Counts are cumulative since the
+ * service was enabled.
+ */
+public final class ConnectionPoolStatistics {
+
+	public static final ConnectionPoolStatistics EMPTY = new ConnectionPoolStatistics(0, 0, 0, 0, 0, 0, 0);
+
+	private final int mActive;
+
+	private final int mIdle;
+
+	private final long mBorrowed;
+
+	private final long mCreated;
+
+	private final long mDestroyed;
+
+	private final long mValidationFailures;
+
+	private final long mExhausted;
+
+	public ConnectionPoolStatistics(int active, int idle, long borrowed, long created, long destroyed,
+	                                long validationFailures, long exhausted) {
+		mActive = active;
+		mIdle = idle;
+		mBorrowed = borrowed;
+		mCreated = created;
+		mDestroyed = destroyed;
+		mValidationFailures = validationFailures;
+		mExhausted = exhausted;
+	}
+
+	public ConnectionPoolStatistics plus(ConnectionPoolStatistics other) {
+		return new ConnectionPoolStatistics(mActive + other.mActive,
+		                                    mIdle + other.mIdle,
+		                                    mBorrowed + other.mBorrowed,
+		                                    mCreated + other.mCreated,
+		                                    mDestroyed + other.mDestroyed,
+		                                    mValidationFailures + other.mValidationFailures,
+		                                    mExhausted + other.mExhausted);
+	}
+
+	/**
+	 * The number of connections currently borrowed
+	 */
+	public int getActive() {
+		return mActive;
+	}
+
+	/**
+	 * The number of connections currently waiting in the pools to be borrowed
+	 */
+	public int getIdle() {
+		return mIdle;
+	}
+
+	public long getBorrowed() {
+		return mBorrowed;
+	}
+
+	public long getCreated() {
+		return mCreated;
+	}
+
+	public long getDestroyed() {
+		return mDestroyed;
+	}
+
+	/**
+	 * The number of idle connections that were discarded because they failed validation when borrowed
+	 */
+	public long getValidationFailures() {
+		return mValidationFailures;
+	}
+
+	/**
+	 * The number of borrow requests that failed because the pool had no connection available in time
+	 */
+	public long getExhausted() {
+		return mExhausted;
+	}
+
+	@Override
+	public String toString() {
+		return "active=" + mActive +
+		       ", idle=" + mIdle +
+		       ", borrowed=" + mBorrowed +
+		       ", created=" + mCreated +
+		       ", destroyed=" + mDestroyed +
+		       ", validationFailures=" + mValidationFailures +
+		       ", exhausted=" + mExhausted;
+	}
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.security.StardogAuthorizationException;
+import com.stardog.stark.IRI;
+import com.stardog.stark.Namespaces;
+import com.stardog.stark.Values;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the namespaces of each database for a limited amount of time so that resolving prefixed names does not
+ * require a request to the server for every FlowFile. IRIs expanded from prefixed names are interned per database
+ * so repeatedly resolving the same name returns the same instance.
+ */
+public class NamespaceCache {
+
+	private static final int MAX_DATABASES = 256;
+
+	private static final int MAX_INTERNED_IRIS = 4096;
+
+	private final Cache<String, Entry> mEntries;
+
+	/**
+	 * @param ttl the amount of time after which the namespaces of a database are fetched again; zero disables caching
+	 */
+	public NamespaceCache(long ttl, TimeUnit unit) {
+		mEntries = CacheBuilder.newBuilder()
+		                       .maximumSize(ttl > 0 ? MAX_DATABASES : 0)
+		                       .expireAfterWrite(ttl, unit)
+		                       .build();
+	}
+
+	/**
+	 * Returns the namespaces of the database, fetching them with the given connection if they are not cached. If the
+	 * user is not allowed to read the namespaces, the {@link Namespaces#DEFAULT default namespaces} are used, and not
+	 * cached, so another user of the same database, or the same user once granted access, gets the actual namespaces.
+	 *
+	 * @param database identifies the database, e.g. by its connection string, and the user the namespaces are fetched as
+	 */
+	public Namespaces getNamespaces(String database, Connection connection) {
+		return entry(database, connection).mNamespaces;
+	}
+
+	/**
+	 * Expands the given prefixed name, or full IRI, using the namespaces of the database.
+	 */
+	public IRI toIRI(String database, Connection connection, String iri) {
+		Entry entry = entry(database, connection);
+		IRI result = entry.mIRIs.get(iri);
+		if (result == null) {
+			result = Values.iri(entry.mNamespaces.map(iri).orElse(iri));
+			if (entry.mIRIs.size() < MAX_INTERNED_IRIS) {
+				entry.mIRIs.putIfAbsent(iri, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the cached namespaces of the database so they are fetched again on next use
+	 */
+	public void refresh(String database) {
+		mEntries.invalidate(database);
+	}
+
+	public void refreshAll() {
+		mEntries.invalidateAll();
+	}
+
+	private Entry entry(String database, Connection connection) {
+		try {
+			return mEntries.get(database, () -> new Entry(connection.namespaces()));
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof StardogAuthorizationException) {
+				// if there was a security error here because you could not read the namespaces, dont punt on the query
+				// just dont use them.
+				return new Entry(Namespaces.DEFAULT);
+			}
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static class Entry {
+
+		private final Namespaces mNamespaces;
+
+		private final ConcurrentMap<String, IRI> mIRIs = new ConcurrentHashMap<>();
+
+		private Entry(Namespaces namespaces) {
+			mNamespaces = namespaces;
+		}
+	}
+}
@@ -41,8 +41,39 @@ public interface StardogClientService extends ControllerService {
 
 	ConnectionConfiguration getConnectionConfiguration();
 
+	/**
+	 * Identifies the configuration returned by {@link #getConnectionConfiguration()}: changes whenever its URL, database
+	 * or credentials do, without revealing the password
+	 */
+	String getConfigurationKey();
+
 	boolean isCredentialsSet();
 
+	/**
+	 * Borrows a connection from the pool that is identified by the given key. The connection must be returned by
+	 * closing the lease once the unit of work is complete.
+	 *
+	 * @param key           identifies the pool from which to borrow
+	 * @param configuration creates the configuration for new connections of the pool; only invoked on pool misses
+	 * @throws ConnectionPoolExhaustedException if no connection becomes available within the configured wait time
+	 */
+	ConnectionLease borrowConnection(ConnectionKey key, Supplier<ConnectionConfiguration> configuration);
+
+	/**
+	 * Borrows a connection for read-only work. If the service is configured with several cluster endpoints, and the
+	 * key uses the service's connection string, the connection is opened to one of the healthy nodes chosen by the
+	 * load balancing strategy. Otherwise this is the same as {@link #borrowConnection(ConnectionKey, Supplier)}, which
+	 * must be used for writes so they stay pinned to a single node.
+	 */
+	ConnectionLease borrowReadConnection(ConnectionKey key, Supplier<ConnectionConfiguration> configuration);
+
+	ConnectionPoolStatistics getPoolStatistics();
+
+	/**
+	 * The namespaces of the databases accessed through this service, shared by all processors using the service
+	 */
+	NamespaceCache getNamespaceCache();
+
 	/**
 	 * A concrete class for implementing {@link Supplier<ConnectionCredentials>} for testing purposes
 	 */
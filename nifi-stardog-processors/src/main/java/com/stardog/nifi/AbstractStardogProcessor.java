@@ -1,23 +1,44 @@
 package com.stardog.nifi;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 import com.complexible.stardog.api.Connection;
 import com.complexible.stardog.api.ConnectionConfiguration;
 import com.complexible.stardog.api.ConnectionCredentials;
+import com.complexible.stardog.api.IO;
 import com.complexible.stardog.api.LoginConnectionConfiguration;
 import com.complexible.stardog.metadata.MetaProperties;
 import com.complexible.stardog.reasoning.ReasoningOptions;
 import com.stardog.stark.IRI;
+import com.stardog.stark.Namespaces;
+import com.stardog.stark.Statement;
 import com.stardog.stark.Values;
+import com.stardog.stark.io.RDFFormat;
+import com.stardog.stark.io.RDFWriter;
+import com.stardog.stark.io.RDFWriters;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.ValidationContext;
@@ -26,10 +47,12 @@ import org.apache.nifi.components.Validator;
 import org.apache.nifi.context.PropertyContext;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.kerberos.KerberosCredentialsService;
+import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.processor.AbstractProcessor;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
 
 import static com.stardog.nifi.StardogClientService.PASSWORD;
@@ -49,6 +72,8 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 		MetaProperties.register(ReasoningOptions.class);
 	}
 
+	private static final String CIRCUIT_BREAKER_DURATION_NAME = "Circuit Breaker Duration";
+
 	static final PropertyDescriptor CLIENT_SERVICE =
 			new PropertyDescriptor.Builder()
 					.name("stardog-client-service")
@@ -90,6 +115,55 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 					.required(false)
 					.build();
 
+	static final PropertyDescriptor WARM_UP =
+			new PropertyDescriptor.Builder()
+					.name("Warm Up")
+					.description("If true, when the processor is scheduled it connects to Stardog, fetches the " +
+					             "namespaces and other metadata used by the processor, and loads the classes " +
+					             "needed to process FlowFiles, so the first FlowFile is processed as fast as the " +
+					             "following ones. Metadata that depends on FlowFile attributes is not fetched. " +
+					             "Failing to warm up does not prevent the processor from running.")
+					.required(true)
+					.defaultValue("false")
+					.allowableValues("true", "false")
+					.build();
+
+	static final PropertyDescriptor CIRCUIT_BREAKER_THRESHOLD =
+			new PropertyDescriptor.Builder()
+					.name("Circuit Breaker Threshold")
+					.description("The number of consecutive FlowFiles that fail because the server cannot be reached, " +
+					             "or is unavailable, after which the processor stops taking FlowFiles for the " +
+					             CIRCUIT_BREAKER_DURATION_NAME + ". FlowFiles that fail for other reasons do not " +
+					             "count and do not make the processor yield.")
+					.required(true)
+					.defaultValue("3")
+					.addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+					.build();
+
+	static final PropertyDescriptor CIRCUIT_BREAKER_DURATION =
+			new PropertyDescriptor.Builder()
+					.name(CIRCUIT_BREAKER_DURATION_NAME)
+					.description("How long the processor stops taking FlowFiles once the " +
+					             CIRCUIT_BREAKER_THRESHOLD.getDisplayName() + " is reached. The next FlowFile after " +
+					             "that is a trial: if it fails because the server is still unavailable the processor " +
+					             "stops again.")
+					.required(true)
+					.defaultValue("30 secs")
+					.addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+					.build();
+
+	static final PropertyDescriptor NAMESPACE_CACHE_DURATION =
+			new PropertyDescriptor.Builder()
+					.name("Namespace Cache Duration")
+					.description("The amount of time the namespaces of a database are cached by the processor before " +
+					             "they are fetched from Stardog again. Namespaces are used to expand prefixed names " +
+					             "such as the target graph and query parameters. A value of zero disables caching. " +
+					             "Ignored when " + CLIENT_SERVICE.getDisplayName() + " is set, whose own cache is used.")
+					.required(true)
+					.defaultValue("5 mins")
+					.addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+					.build();
+
 	public static final Relationship REL_SUCCESS =
 			new Relationship.Builder().name("success")
 			                          .description("A FlowFile is transferred to this relationship if the operation completed successfully.")
@@ -101,16 +175,97 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 			                          .build();
 
 	public static final List<PropertyDescriptor> DEFAULT_PROPERTIES =
-			ImmutableList.of(CLIENT_SERVICE, KERBEROS_CREDENTIALS_SERVICE, SERVER, USERNAME, PASSWORD);
+			ImmutableList.of(CLIENT_SERVICE, KERBEROS_CREDENTIALS_SERVICE, SERVER, USERNAME, PASSWORD, WARM_UP,
+			                 CIRCUIT_BREAKER_THRESHOLD, CIRCUIT_BREAKER_DURATION, NAMESPACE_CACHE_DURATION);
 
 	public static final Relationship REL_RETRY =
 			new Relationship.Builder().name("retry")
-			                          .description("A FlowFile is transferred to this relationship if the operation " +
-			                                       "cannot be completed but attempting it again may succeed.")
+			                          .description("A FlowFile is transferred to this relationship, and penalized, if " +
+			                                       "the operation cannot be completed but attempting it again may " +
+			                                       "succeed, e.g. because the server timed out, was unavailable or " +
+			                                       "reported a transaction conflict.")
 			                          .build();
 
 	public static final Set<Relationship> DEFAULT_RELATIONSHIPS = ImmutableSet.of(REL_SUCCESS, REL_FAILURE, REL_RETRY);
 
+	private static final int MAX_CACHED_ENDPOINTS = 256;
+
+	/**
+	 * Used when the processor is not configured with a {@link #CLIENT_SERVICE}
+	 */
+	private volatile NamespaceCache mNamespaceCache = new NamespaceCache(0, TimeUnit.MILLISECONDS);
+
+	private final Cache<String, Endpoint> mEndpoints = CacheBuilder.newBuilder()
+	                                                               .maximumSize(MAX_CACHED_ENDPOINTS)
+	                                                               .build();
+
+	private volatile CircuitBreaker mCircuitBreaker = new CircuitBreaker(3, 30, TimeUnit.SECONDS);
+
+	private final Krb5CredentialsCache.Metrics mKrb5Metrics = new Krb5CredentialsCache.Metrics();
+
+	/**
+	 * Whether the processor was registered with the {@link Krb5CredentialsCache} when it was scheduled
+	 */
+	private volatile boolean mKrb5Registered;
+
+	@OnScheduled
+	public final void onScheduled(ProcessContext context) {
+		mCircuitBreaker = new CircuitBreaker(context.getProperty(CIRCUIT_BREAKER_THRESHOLD).asInteger(),
+		                                     context.getProperty(CIRCUIT_BREAKER_DURATION).asTimePeriod(TimeUnit.MILLISECONDS),
+		                                     TimeUnit.MILLISECONDS);
+		mNamespaceCache = new NamespaceCache(context.getProperty(NAMESPACE_CACHE_DURATION).asTimePeriod(TimeUnit.MILLISECONDS),
+		                                     TimeUnit.MILLISECONDS);
+		if (isKerberosCredentials(context) && !mKrb5Registered) {
+			Krb5CredentialsCache.getInstance().register();
+			mKrb5Registered = true;
+		}
+
+		initialize(context);
+
+		if (context.getProperty(WARM_UP).asBoolean()) {
+			warmUp(context);
+		}
+	}
+
+	@OnStopped
+	public final void onStopped() {
+		if (mKrb5Registered) {
+			mKrb5Registered = false;
+			Krb5CredentialsCache.getInstance().unregister();
+		}
+	}
+
+	/**
+	 * Prepares the state used to process FlowFiles. Called when the processor is scheduled, before warming up.
+	 */
+	protected void initialize(ProcessContext context) {
+	}
+
+	private void warmUp(ProcessContext context) {
+		if (context.getProperty(SERVER).isExpressionLanguagePresent()) {
+			getLogger().info("Not warming up because {} depends on FlowFile attributes", new Object[] { SERVER.getDisplayName() });
+			return;
+		}
+
+		Stopwatch stopwatch = Stopwatch.createStarted();
+		try (ConnectionLease lease = connect(context, null)) {
+			Connection connection = lease.get();
+			getNamespaces(context, null, connection);
+			warmUp(context, connection);
+			getLogger().info("Warmed up in {} ms", new Object[] { stopwatch.elapsed(TimeUnit.MILLISECONDS) });
+		}
+		catch (RuntimeException e) {
+			getLogger().warn("Failed to warm up; the first FlowFile will connect to Stardog instead", e);
+		}
+	}
+
+	/**
+	 * Fetches the metadata, and loads the classes, used to process FlowFiles with the given connection. Only metadata
+	 * that does not depend on FlowFile attributes can be fetched.
+	 */
+	protected void warmUp(ProcessContext context, Connection connection) {
+	}
+
 	protected ConnectionConfiguration getConnectionConfiguration(PropertyContext context, FlowFile inputFile) {
 		ConnectionConfiguration configuration;
 		StardogClientService stardogClientService = context.getProperty(CLIENT_SERVICE)
@@ -129,9 +284,9 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 
 			// We let the user override the url in the processor so that expressions can be applied
 			if (connectionURL != null) {
-				ConnectionConfiguration override = ConnectionConfiguration.from(connectionURL);
-				configuration.server(override.get(LoginConnectionConfiguration.SERVER))
-				             .database(override.get(ConnectionConfiguration.DATABASE));
+				Endpoint override = getEndpoint(connectionURL);
+				configuration.server(override.mServer)
+				             .database(override.mDatabase);
 			}
 		}
 
@@ -140,13 +295,69 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 		if (krb5CredentialsService != null) {
 			String keytab = krb5CredentialsService.getKeytab();
 			String principal = krb5CredentialsService.getPrincipal();
-			configuration = configuration.credentialSupplier(new Krb5CredentialsSupplier(keytab, principal));
+			configuration = configuration.credentialSupplier(new Krb5CredentialsSupplier(keytab, principal, getLogger(), mKrb5Metrics));
 		}
 		return configuration;
 	}
 
-	protected Connection connect(PropertyContext context, FlowFile inputFile) {
-		return getConnectionConfiguration(context, inputFile).connect();
+	/**
+	 * Parses the given connection string once and caches the result, so routing FlowFiles to many databases with an
+	 * expression does not parse the same connection strings over and over again.
+	 */
+	private Endpoint getEndpoint(String connectionURL) {
+		Endpoint endpoint = mEndpoints.getIfPresent(connectionURL);
+		if (endpoint == null) {
+			ConnectionConfiguration parsed = ConnectionConfiguration.from(connectionURL);
+			endpoint = new Endpoint(parsed.get(LoginConnectionConfiguration.SERVER),
+			                        parsed.get(ConnectionConfiguration.DATABASE));
+			mEndpoints.put(connectionURL, endpoint);
+		}
+		return endpoint;
+	}
+
+	/**
+	 * Identifies the pool of the {@link #CLIENT_SERVICE} from which connections for the given FlowFile are borrowed.
+	 * Subclasses that add connection options to {@link #getConnectionConfiguration(PropertyContext, FlowFile)} must
+	 * add them to the key as well.
+	 */
+	protected ConnectionKey getConnectionKey(PropertyContext context, FlowFile inputFile) {
+		String connectionURL = context.getProperty(SERVER).evaluateAttributeExpressions(inputFile).getValue();
+
+		KerberosCredentialsService krb5CredentialsService = context.getProperty(KERBEROS_CREDENTIALS_SERVICE)
+		                                                           .asControllerService(KerberosCredentialsService.class);
+		String principal = krb5CredentialsService == null ? null : krb5CredentialsService.getPrincipal();
+
+		return new ConnectionKey(connectionURL, principal);
+	}
+
+	/**
+	 * Obtains a connection for the given FlowFile. If {@link #CLIENT_SERVICE} is set, the connection is borrowed from
+	 * its pool, otherwise a new connection is opened. Either way, the lease must be closed when the work is done.
+	 */
+	protected ConnectionLease connect(PropertyContext context, FlowFile inputFile) {
+		StardogClientService stardogClientService = context.getProperty(CLIENT_SERVICE)
+		                                                   .asControllerService(StardogClientService.class);
+		if (stardogClientService == null) {
+			return ConnectionLease.unpooled(getConnectionConfiguration(context, inputFile).connect());
+		}
+
+		return stardogClientService.borrowConnection(getConnectionKey(context, inputFile),
+		                                             () -> getConnectionConfiguration(context, inputFile));
+	}
+
+	/**
+	 * Obtains a connection for read-only work on the given FlowFile. If {@link #CLIENT_SERVICE} is set and configured
+	 * with the nodes of a cluster, the connection may be opened to any healthy node rather than the one writes go to.
+	 */
+	protected ConnectionLease connectForRead(PropertyContext context, FlowFile inputFile) {
+		StardogClientService stardogClientService = context.getProperty(CLIENT_SERVICE)
+		                                                   .asControllerService(StardogClientService.class);
+		if (stardogClientService == null) {
+			return connect(context, inputFile);
+		}
+
+		return stardogClientService.borrowReadConnection(getConnectionKey(context, inputFile),
+		                                                 () -> getConnectionConfiguration(context, inputFile));
 	}
 
 	/**
@@ -227,6 +438,212 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 		       : Values.iri(conn.namespaces().map(iri).orElse(iri));
 	}
 
+	/**
+	 * Same as {@link #toIRI(String, Connection, IRI)} but resolves prefixes with the cached namespaces of the database
+	 */
+	protected IRI toIRI(PropertyContext context, FlowFile inputFile, String iri, Connection conn, IRI defaultIRI) {
+		return Strings.isNullOrEmpty(iri)
+		       ? defaultIRI
+		       : getNamespaceCache(context).toIRI(getDatabaseKey(context, inputFile), conn, iri);
+	}
+
+	protected Namespaces getNamespaces(PropertyContext context, FlowFile inputFile, Connection conn) {
+		return getNamespaceCache(context).getNamespaces(getDatabaseKey(context, inputFile), conn);
+	}
+
+	protected NamespaceCache getNamespaceCache(PropertyContext context) {
+		StardogClientService stardogClientService = context.getProperty(CLIENT_SERVICE)
+		                                                   .asControllerService(StardogClientService.class);
+		return stardogClientService == null
+		       ? mNamespaceCache
+		       : stardogClientService.getNamespaceCache();
+	}
+
+	/**
+	 * Identifies the database of the FlowFile, and the user the processor connects as, in the caches of database
+	 * metadata, since what a user is allowed to read differs. The connection string of the client service is identified
+	 * by an empty connection string since the caches of a client service are not shared with other services.
+	 */
+	protected String getDatabaseKey(PropertyContext context, FlowFile inputFile) {
+		KerberosCredentialsService krb5CredentialsService = context.getProperty(KERBEROS_CREDENTIALS_SERVICE)
+		                                                           .asControllerService(KerberosCredentialsService.class);
+		String user = krb5CredentialsService != null
+		              ? krb5CredentialsService.getPrincipal()
+		              : context.getProperty(USERNAME).evaluateAttributeExpressions().getValue();
+		return Joiner.on('|')
+		             .useForNull("")
+		             .join(context.getProperty(SERVER).evaluateAttributeExpressions(inputFile).getValue(), user);
+	}
+
+	/**
+	 * Returns false, and yields, while the server is considered down after too many consecutive FlowFiles failed to
+	 * reach it. Processors check this before taking a FlowFile so they do not fail FlowFiles while the server is down.
+	 */
+	protected boolean isServerAvailable(ProcessContext context) {
+		if (mCircuitBreaker.allowRequest()) {
+			return true;
+		}
+		context.yield();
+		return false;
+	}
+
+	/**
+	 * Transfers the processed FlowFile to {@link #REL_SUCCESS}
+	 */
+	protected void transferToSuccess(ProcessSession session, FlowFile outputFile) {
+		mCircuitBreaker.recordSuccess();
+		session.transfer(outputFile, REL_SUCCESS);
+		reportKerberosMetrics(session);
+	}
+
+	/**
+	 * Adds the Kerberos logins, renewals and negotiation time recorded since the last report to the counters of the
+	 * processor
+	 */
+	private void reportKerberosMetrics(ProcessSession session) {
+		mKrb5Metrics.drainTo((counter, delta) -> session.adjustCounter(counter, delta, false));
+	}
+
+	/**
+	 * Routes a FlowFile that failed to {@link #REL_RETRY}, penalized, if attempting it again may succeed, or to
+	 * {@link #REL_FAILURE} otherwise. The processor only yields when the server is unavailable for several FlowFiles in
+	 * a row, so one bad FlowFile does not hold up the others.
+	 */
+	protected void transferToFailure(ProcessContext context, ProcessSession session, FlowFile inputFile, Throwable t) {
+		transferToFailure(context, session, Collections.singletonList(inputFile), t);
+	}
+
+	/**
+	 * Drops the cached Kerberos credentials of the processor, if it uses any, so the next connection logs in again
+	 * rather than presenting a ticket the server rejected
+	 */
+	private void invalidateKerberosCredentials(ProcessContext context) {
+		KerberosCredentialsService krb5CredentialsService = context.getProperty(KERBEROS_CREDENTIALS_SERVICE)
+		                                                           .asControllerService(KerberosCredentialsService.class);
+		if (krb5CredentialsService != null) {
+			getLogger().info("Stardog rejected the Kerberos credentials of {}; logging in again",
+			                 new Object[] { krb5CredentialsService.getPrincipal() });
+			Krb5CredentialsCache.getInstance().invalidate(krb5CredentialsService.getKeytab(),
+			                                              krb5CredentialsService.getPrincipal());
+		}
+	}
+
+	/**
+	 * Routes FlowFiles that failed together, e.g. in the same transaction, as a single failure
+	 */
+	protected void transferToFailure(ProcessContext context, ProcessSession session, List<FlowFile> inputFiles,
+	                                 Throwable t) {
+		reportKerberosMetrics(session);
+		Throwable rootCause = Throwables.getRootCause(t);
+		FailureClassifier.Failure failure = FailureClassifier.classify(t);
+		if (FailureClassifier.isAuthenticationFailure(t)) {
+			invalidateKerberosCredentials(context);
+		}
+		switch (failure) {
+			case SERVER_DOWN:
+				getLogger().warn("{} failed because Stardog is unavailable: {}; transferring {} to 'retry'",
+				                 new Object[] { this, rootCause, inputFiles });
+				if (mCircuitBreaker.recordServerDown()) {
+					getLogger().warn("Stardog has been unavailable for {} FlowFiles in a row; not taking FlowFiles for {}",
+					                 new Object[] { context.getProperty(CIRCUIT_BREAKER_THRESHOLD).getValue(),
+					                                context.getProperty(CIRCUIT_BREAKER_DURATION).getValue() });
+					context.yield();
+				}
+				inputFiles.forEach(inputFile -> session.transfer(session.penalize(inputFile), REL_RETRY));
+				break;
+			case TRANSIENT:
+				mCircuitBreaker.recordSuccess();
+				getLogger().warn("{} failed: {}; transferring {} to 'retry'", new Object[] { this, rootCause, inputFiles });
+				inputFiles.forEach(inputFile -> session.transfer(session.penalize(inputFile), REL_RETRY));
+				break;
+			default:
+				// The server responded, so it is available even though it rejected the request
+				mCircuitBreaker.recordSuccess();
+				getLogger().error("{} failed: {}; transferring {} to 'failure'", new Object[] { this, rootCause, inputFiles }, t);
+				session.transfer(inputFiles, REL_FAILURE);
+		}
+	}
+
+	/**
+	 * Adds the statements in a transaction of their own, serialized in the given format
+	 */
+	protected void addStatements(ProcessContext context, ConnectionLease lease, List<Statement> statements,
+	                             RDFFormat format, IRI targetGraph) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RDFWriter writer = RDFWriters.to(out, format)
+		                             .orElseThrow(() -> new ProcessException("No writer available for " + format));
+		writer.start();
+		statements.forEach(writer::handle);
+		writer.end();
+		byte[] data = out.toByteArray();
+
+		Connection connection = lease.get();
+		connection.begin();
+		try {
+			send(context, newIO(connection, format, targetGraph), new ByteArrayInputStream(data));
+			connection.commit();
+		}
+		catch (IOException e) {
+			rollback(lease);
+			throw new ProcessException("Failed to write the statements to a temporary file", e);
+		}
+		catch (RuntimeException e) {
+			rollback(lease);
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends the content read from the stream with the IO of a connection. With Kerberos the server may challenge a
+	 * request after its content was sent, and the HTTP client can only send the content again if it is a file, so the
+	 * content is then written to a temporary file first and every request is repeatable from the start.
+	 */
+	protected void send(ProcessContext context, IO io, InputStream in) throws IOException {
+		if (!isKerberosCredentials(context)) {
+			io.stream(in);
+			return;
+		}
+
+		Path tempFile = Files.createTempFile("stardog-nifi-", ".tmp");
+		try {
+			Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+			io.file(tempFile);
+		}
+		finally {
+			try {
+				Files.deleteIfExists(tempFile);
+			}
+			catch (IOException e) {
+				getLogger().warn("Failed to delete temporary file {}", new Object[] { tempFile }, e);
+			}
+		}
+	}
+
+	protected static IO newIO(Connection connection, RDFFormat format, IRI targetGraph) {
+		return connection.add()
+		                 .io()
+		                 .format(format)
+		                 .context(targetGraph);
+	}
+
+	/**
+	 * Rolls back the open transaction of the leased connection. The connection is not returned to the pool if the
+	 * rollback fails since its transaction state is unknown.
+	 */
+	protected void rollback(ConnectionLease lease) {
+		try {
+			lease.get().rollback();
+		}
+		catch (RuntimeException e) {
+			lease.invalidate();
+			getLogger().warn("Failed to roll back transaction", e);
+		}
+	}
+
+	protected boolean isKerberosCredentials(ProcessContext context) {
+		return context.getProperty(KERBEROS_CREDENTIALS_SERVICE).isSet();
+	}
+
 	protected static FlowFile getOptionalFlowFile(ProcessContext context, ProcessSession session) {
 		FlowFile inputFile = session.get();
 		// If we have no FlowFile, and all incoming connections are self-loops then we can continue on.
@@ -244,7 +661,23 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 	}
 
 	/**
-	 * A concrete class for implementing {@link Supplier<ConnectionCredentials>} for testing purposes
+	 * The server and database parsed from a connection string
+	 */
+	private static class Endpoint {
+
+		private final String mServer;
+
+		private final String mDatabase;
+
+		private Endpoint(String server, String database) {
+			mServer = server;
+			mDatabase = database;
+		}
+	}
+
+	/**
+	 * A concrete class for implementing {@link Supplier<ConnectionCredentials>} for testing purposes. The credentials
+	 * are shared through {@link Krb5CredentialsCache} by all processors using the same keytab and principal.
 	 */
 	public static class Krb5CredentialsSupplier implements Supplier<ConnectionCredentials> {
 
@@ -252,14 +685,20 @@ public abstract class AbstractStardogProcessor extends AbstractProcessor {
 
 		private final String mPrincipal;
 
-		public Krb5CredentialsSupplier(String keytab, String principal) {
+		private final ComponentLog mLogger;
+
+		private final Krb5CredentialsCache.Metrics mMetrics;
+
+		public Krb5CredentialsSupplier(String keytab, String principal, ComponentLog logger, Krb5CredentialsCache.Metrics metrics) {
 			mKeytab = keytab;
 			mPrincipal = principal;
+			mLogger = logger;
+			mMetrics = metrics;
 		}
 
 		@Override
 		public ConnectionCredentials get() {
-			return ConnectionCredentials.createKrb5Credential(new File(mKeytab), mPrincipal, true);
+			return Krb5CredentialsCache.getInstance().get(mKeytab, mPrincipal, mLogger, mMetrics);
 		}
 
 		public String getPrincipal() {
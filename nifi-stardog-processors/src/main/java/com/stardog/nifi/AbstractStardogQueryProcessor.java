@@ -1,19 +1,18 @@
 package com.stardog.nifi;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.complexible.common.rdf.rio.TurtleValueParser;
-import com.complexible.stardog.StardogException;
 import com.complexible.stardog.api.Connection;
 import com.complexible.stardog.api.ConnectionConfiguration;
-import com.complexible.stardog.api.reasoning.ReasoningConnection;
-import com.complexible.stardog.api.reasoning.SchemaManager;
-import com.complexible.stardog.security.StardogAuthorizationException;
-import com.stardog.stark.Namespaces;
 import com.stardog.stark.Value;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.ValidationContext;
@@ -22,6 +21,7 @@ import org.apache.nifi.components.Validator;
 import org.apache.nifi.context.PropertyContext;
 import org.apache.nifi.expression.ExpressionLanguageScope;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.kerberos.KerberosCredentialsService;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
@@ -60,15 +60,63 @@ public abstract class AbstractStardogQueryProcessor extends AbstractStardogProce
 					.expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
 					.build();
 
+	public static final PropertyDescriptor STORED_QUERY_CACHE_DURATION =
+			new PropertyDescriptor.Builder()
+					.name("Stored Query Cache Duration")
+					.description("The amount of time a stored query selected by Query Name is cached before it is " +
+					             "fetched from Stardog again. Stopping the processor clears the cache. A value of zero " +
+					             "disables caching.")
+					.required(true)
+					.defaultValue("1 min")
+					.addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+					.build();
+
 	private final PropertyDescriptor mQueryNameDescriptor;
 
 	private final PropertyDescriptor mQueryDescriptor;
 
+	private volatile StoredQueryCache mStoredQueries = new StoredQueryCache(0, TimeUnit.MILLISECONDS);
+
+	/**
+	 * The query when it is set without expressions, parsed when the processor is scheduled
+	 */
+	private volatile ParsedQuery mStaticQuery;
+
 	protected AbstractStardogQueryProcessor(PropertyDescriptor queryNameDescriptor, PropertyDescriptor queryDescriptor) {
 		mQueryNameDescriptor = queryNameDescriptor;
 		mQueryDescriptor = queryDescriptor;
 	}
 
+	@Override
+	protected void initialize(ProcessContext context) {
+		mStoredQueries = new StoredQueryCache(context.getProperty(STORED_QUERY_CACHE_DURATION)
+		                                             .asTimePeriod(TimeUnit.MILLISECONDS),
+		                                      TimeUnit.MILLISECONDS);
+
+		PropertyValue query = context.getProperty(mQueryDescriptor);
+		mStaticQuery = query.isSet() && !query.isExpressionLanguagePresent()
+		               ? ParsedQuery.parse(query.getValue())
+		               : null;
+	}
+
+	/**
+	 * Fetches the stored query selected by Query Name into the cache, unless it depends on FlowFile attributes
+	 */
+	@Override
+	protected void warmUp(ProcessContext context, Connection connection) {
+		PropertyValue queryName = context.getProperty(mQueryNameDescriptor);
+		if (queryName.isSet() && !queryName.isExpressionLanguagePresent()) {
+			mStoredQueries.get(getDatabaseKey(context, null), queryName.getValue(), connection);
+		}
+	}
+
+	/**
+	 * Drops the cached stored queries so they are fetched again on next use
+	 */
+	public void invalidateStoredQueries() {
+		mStoredQueries.invalidateAll();
+	}
+
 	@Override
 	protected PropertyDescriptor getSupportedDynamicPropertyDescriptor(String propertyDescriptorName) {
 		if (propertyDescriptorName != null &&
@@ -115,26 +163,33 @@ public abstract class AbstractStardogQueryProcessor extends AbstractStardogProce
 		}
 	}
 
-	protected String getQueryString(ProcessContext context, FlowFile inputFile, Connection connection) {
+	protected ParsedQuery getQuery(ProcessContext context, FlowFile inputFile, Connection connection) {
+		ParsedQuery staticQuery = mStaticQuery;
+		if (staticQuery != null) {
+			return staticQuery;
+		}
+
 		return context.getProperty(mQueryDescriptor).isSet()
-		       ? context.getProperty(mQueryDescriptor).evaluateAttributeExpressions(inputFile).getValue()
-		       : connection.admin()
-		                   .getStoredQueries()
-		                   .get(context.getProperty(mQueryNameDescriptor)
-		                               .evaluateAttributeExpressions(inputFile)
-		                               .getValue())
-		                   .getQuery();
+		       ? ParsedQuery.of(context.getProperty(mQueryDescriptor).evaluateAttributeExpressions(inputFile).getValue())
+		       : mStoredQueries.get(getDatabaseKey(context, inputFile),
+		                            context.getProperty(mQueryNameDescriptor)
+		                                   .evaluateAttributeExpressions(inputFile)
+		                                   .getValue(),
+		                            connection);
 	}
 
 	protected Map<String, Value> getBindings(ProcessContext context, FlowFile inputFile, Connection connection) {
 		Map<String,Value> aParameters =  Maps.newHashMap();
 
-		Namespaces namespaces = namespaces(connection);
-		TurtleValueParser aParser = new TurtleValueParser(namespaces);
+		TurtleValueParser aParser = null;
 
 		for (Map.Entry<PropertyDescriptor, String> entry : context.getProperties().entrySet()) {
 			PropertyDescriptor descriptor = entry.getKey();
 			if (descriptor.isDynamic() && entry.getValue() != null) {
+				if (aParser == null) {
+					// Only needed, and only looked up, when the processor has query parameters
+					aParser = new TurtleValueParser(getNamespaces(context, inputFile, connection));
+				}
 				try {
 					Value value = aParser.parse(context.getProperty(descriptor.getName())
 					                                   .evaluateAttributeExpressions(inputFile)
@@ -149,26 +204,13 @@ public abstract class AbstractStardogQueryProcessor extends AbstractStardogProce
 		return aParameters;
 	}
 
-	private Namespaces namespaces(Connection theConn) throws StardogException {
-		Namespaces aNamespaces = Namespaces.DEFAULT;
-		try {
-			aNamespaces = theConn.namespaces();
-		}
-		catch (StardogAuthorizationException e) {
-			// if there was a security error here because you could not read the namespaces, dont punt on the query
-			// just dont use them.
-			getLogger().info("Could not retrieve namespaces from database, proceeding without them.");
-		}
-		return aNamespaces;
-	}
-
 	protected void validateSchema(ValidationContext context, Set<ValidationResult> results) {
 		PropertyValue schema = context.getProperty(REASONING_SCHEMA);
 		if (schema.isSet() && !schema.getValue().contains("$")) {
-			try (Connection connection = connect(context)) {
-				ReasoningConnection reasoningConnection = connection.as(ReasoningConnection.class);
-				SchemaManager schemaManager = reasoningConnection.getSchemaManager();
-				Set<String> schemas = schemaManager.getSchemas();
+			try {
+				// Resolved now rather than by the cache, which outlives the validation context
+				Set<String> schemas = SchemaCache.getInstance().getSchemas(getSchemaCacheKey(context),
+				                                                           getConnectionConfiguration(context, null));
 				if (!schemas.contains(schema.getValue())) {
 					String msg = String.format("Unrecognized schema: '%s'. Valid values: %s", schema, schemas);
 					results.add(new ValidationResult.Builder().subject(REASONING_SCHEMA.getDisplayName())
@@ -183,23 +225,61 @@ public abstract class AbstractStardogQueryProcessor extends AbstractStardogProce
 		}
 	}
 
-	protected Connection connect(PropertyContext context) {
-		return connect(context, null);
+	/**
+	 * Identifies the endpoint, and the credentials used to access it, in the {@link SchemaCache}. The configuration of
+	 * the client service and the credentials are hashed so the cache does not hold the password, and any change to the
+	 * URL, database or credentials the services resolve maps to a new entry.
+	 */
+	private String getSchemaCacheKey(ValidationContext context) {
+		StardogClientService clientService = context.getProperty(CLIENT_SERVICE)
+		                                            .asControllerService(StardogClientService.class);
+		KerberosCredentialsService krb5CredentialsService = context.getProperty(KERBEROS_CREDENTIALS_SERVICE)
+		                                                           .asControllerService(KerberosCredentialsService.class);
+		String credentials = Joiner.on('|')
+		                           .useForNull("")
+		                           .join(clientService == null ? null : clientService.getConfigurationKey(),
+		                                 context.getProperty(StardogClientService.USERNAME).evaluateAttributeExpressions().getValue(),
+		                                 context.getProperty(StardogClientService.PASSWORD).evaluateAttributeExpressions().getValue(),
+		                                 krb5CredentialsService == null ? null : krb5CredentialsService.getPrincipal(),
+		                                 krb5CredentialsService == null ? null : krb5CredentialsService.getKeytab());
+		return Joiner.on('|')
+		             .useForNull("")
+		             .join(context.getProperty(SERVER).evaluateAttributeExpressions().getValue(),
+		                   Hashing.sha256().hashString(credentials, StandardCharsets.UTF_8));
 	}
 
-	protected Connection connect(PropertyContext context, FlowFile inputFile) {
-		ConnectionConfiguration configuration = getConnectionConfiguration(context, inputFile);
+	@Override
+	protected ConnectionConfiguration getConnectionConfiguration(PropertyContext context, FlowFile inputFile) {
+		ConnectionConfiguration configuration = super.getConnectionConfiguration(context, inputFile);
+
+		boolean reasoning = isReasoning(context, inputFile);
+		configuration.reasoning(reasoning);
 
-		PropertyValue reasoningValue = context.getProperty(REASONING).evaluateAttributeExpressions(inputFile);
-		configuration.reasoning(reasoningValue.asBoolean());
+		String schema = getReasoningSchema(context, inputFile);
+		if (schema != null) {
+			configuration.schema(schema);
+		}
 
-		if (reasoningValue.asBoolean()) {
+		return configuration;
+	}
+
+	@Override
+	protected ConnectionKey getConnectionKey(PropertyContext context, FlowFile inputFile) {
+		return super.getConnectionKey(context, inputFile)
+		            .withReasoning(isReasoning(context, inputFile), getReasoningSchema(context, inputFile));
+	}
+
+	private boolean isReasoning(PropertyContext context, FlowFile inputFile) {
+		return context.getProperty(REASONING).evaluateAttributeExpressions(inputFile).asBoolean();
+	}
+
+	private String getReasoningSchema(PropertyContext context, FlowFile inputFile) {
+		if (isReasoning(context, inputFile)) {
 			PropertyValue schemaValue = context.getProperty(REASONING_SCHEMA).evaluateAttributeExpressions(inputFile);
 			if (schemaValue.isSet()) {
-				configuration.schema(schemaValue.evaluateAttributeExpressions(inputFile).getValue());
+				return schemaValue.getValue();
 			}
 		}
-
-		return configuration.connect();
+		return null;
 	}
 }
@@ -0,0 +1,134 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import com.stardog.stark.BNode;
+import com.stardog.stark.Statement;
+import com.stardog.stark.io.RDFFormat;
+import com.stardog.stark.io.RDFHandler;
+import com.stardog.stark.io.RDFParser;
+import com.stardog.stark.io.RDFParsers;
+
+import com.google.common.collect.Lists;
+import org.apache.nifi.processor.exception.ProcessException;
+
+/**
+ * Collects the statements of a parsed document into batches of a fixed size and hands each batch to a writer, which
+ * is expected to commit it. Since the document is parsed on the client, prefixes and the base IRI only matter to the
+ * parser, which keeps them for the whole document, and the batches contain nothing but absolute statements.
+ * <p>
+ * At most one batch of statements is held in memory.
+ * <p>
+ * The labels of blank nodes are not stable across parses, so a load that committed a blank node cannot be resumed:
+ * the statements skipped when resuming would not be linked to the blank nodes of the statements loaded afterwards.
+ * Progress is only reported as resumable until the first batch with a blank node is committed.
+ */
+final class BatchingRDFHandler implements RDFHandler {
+
+	interface BatchWriter {
+
+		void write(List<Statement> statements);
+	}
+
+	private final int mBatchSize;
+
+	private final long mSkip;
+
+	private final BatchWriter mWriter;
+
+	private final LongConsumer mProgress;
+
+	private final List<Statement> mBatch;
+
+	private long mParsed;
+
+	private long mCommitted;
+
+	private int mCommits;
+
+	private boolean mResumable = true;
+
+	/**
+	 * @param skip the number of statements at the start of the document that are already committed, e.g. when
+	 *             resuming a load
+	 * @param progress called after every batch with the number of committed statements the load can be resumed after,
+	 *                 which is zero once a statement with a blank node was committed
+	 */
+	BatchingRDFHandler(int batchSize, long skip, BatchWriter writer, LongConsumer progress) {
+		mBatchSize = batchSize;
+		mSkip = skip;
+		mWriter = writer;
+		mProgress = progress;
+		mBatch = Lists.newArrayListWithCapacity(batchSize);
+		mCommitted = skip;
+	}
+
+	/**
+	 * Parses the document and writes all its statements in batches
+	 */
+	void load(InputStream in, RDFFormat format, String baseIRI) throws IOException {
+		RDFParser parser = RDFParsers.createParser(format)
+		                             .orElseThrow(() -> new ProcessException("No parser available for " + format));
+		parser.parse(in, baseIRI, this);
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void namespace(String prefix, String iri) {
+	}
+
+	@Override
+	public void handle(Statement statement) {
+		if (mParsed++ < mSkip) {
+			return;
+		}
+		mBatch.add(statement);
+		if (mBatch.size() >= mBatchSize) {
+			flush();
+		}
+	}
+
+	@Override
+	public void end() {
+		flush();
+	}
+
+	private void flush() {
+		if (mBatch.isEmpty()) {
+			return;
+		}
+		if (mResumable && mBatch.stream().anyMatch(BatchingRDFHandler::hasBlankNode)) {
+			mResumable = false;
+		}
+		mWriter.write(mBatch);
+		mCommitted += mBatch.size();
+		mCommits++;
+		mBatch.clear();
+		mProgress.accept(mResumable ? mCommitted : 0);
+	}
+
+	private static boolean hasBlankNode(Statement statement) {
+		return statement.subject() instanceof BNode || statement.object() instanceof BNode;
+	}
+
+	/**
+	 * The number of statements of the document that are committed, including the ones that were skipped
+	 */
+	long getCommittedStatements() {
+		return mCommitted;
+	}
+
+	int getCommits() {
+		return mCommits;
+	}
+}
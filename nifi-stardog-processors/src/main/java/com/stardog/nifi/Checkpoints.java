@@ -0,0 +1,174 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.logging.ComponentLog;
+
+/**
+ * Records how far the load of a FlowFile got, keyed by the UUID of the FlowFile, in the local state of the processor so
+ * a retried FlowFile can resume where the previous attempt stopped. A checkpoint is only returned for a FlowFile of the
+ * same size and {@link #fingerprint(InputStream) fingerprint}, so a FlowFile whose content was replaced under the same
+ * UUID is loaded from the start, and for the same kind of position it was recorded for. Checkpoints that are not used
+ * within the retention period are dropped. The UUIDs of the dropped checkpoints are kept until {@link #removeExpired()} returns
+ * them, so whatever the loads of their FlowFiles left behind can be cleaned up.
+ * <p>
+ * Failing to read or write the state never fails a load; the FlowFile is loaded from the start instead.
+ */
+final class Checkpoints {
+
+	/**
+	 * The kind of position recorded for a FlowFile loaded in chunks: the offset of the first byte not committed
+	 */
+	static final String BYTE_OFFSET = "offset";
+
+	/**
+	 * The kind of position recorded for a FlowFile loaded in bounded transactions: the number of statements committed
+	 */
+	static final String STATEMENT_INDEX = "statements";
+
+	private static final char SEPARATOR = ',';
+
+	private static final int FIELDS = 5;
+
+	/**
+	 * The number of bytes at the start of the content that are hashed into its fingerprint
+	 */
+	static final int FINGERPRINT_BYTES = 64 * 1024;
+
+	private final StateManager mStateManager;
+
+	private final long mRetentionMillis;
+
+	private final ComponentLog mLogger;
+
+	private final Set<String> mExpired = Sets.newHashSet();
+
+	Checkpoints(StateManager stateManager, long retentionMillis, ComponentLog logger) {
+		mStateManager = stateManager;
+		mRetentionMillis = retentionMillis;
+		mLogger = logger;
+	}
+
+	/**
+	 * Returns the fingerprint of the content read from the stream: a hash of its first {@link #FINGERPRINT_BYTES} bytes
+	 */
+	static String fingerprint(InputStream in) throws IOException {
+		return Hashing.sha256().hashBytes(ByteStreams.toByteArray(ByteStreams.limit(in, FINGERPRINT_BYTES))).toString();
+	}
+
+	/**
+	 * Returns the position the load of the FlowFile can resume from, or zero if there is no usable checkpoint
+	 */
+	synchronized long get(FlowFile flowFile, String fingerprint, String kind) {
+		try {
+			String value = mStateManager.getState(Scope.LOCAL).get(getKey(flowFile));
+			if (value == null) {
+				return 0;
+			}
+
+			List<String> fields = Splitter.on(SEPARATOR).splitToList(value);
+			if (fields.size() != FIELDS
+			    || !kind.equals(fields.get(0))
+			    || Long.parseLong(fields.get(2)) != flowFile.getSize()
+			    || isExpired(Long.parseLong(fields.get(3)))
+			    || !fingerprint.equals(fields.get(4))) {
+				return 0;
+			}
+			return Long.parseLong(fields.get(1));
+		}
+		catch (IOException | NumberFormatException e) {
+			mLogger.warn("Failed to read the checkpoint of {}; loading it from the start", new Object[] { flowFile, e });
+			return 0;
+		}
+	}
+
+	synchronized void put(FlowFile flowFile, String fingerprint, String kind, long position) {
+		try {
+			Map<String, String> state = getUnexpiredState();
+			state.put(getKey(flowFile), Joiner.on(SEPARATOR).join(kind, position, flowFile.getSize(), System.currentTimeMillis(),
+			                                                       fingerprint));
+			mStateManager.setState(state, Scope.LOCAL);
+		}
+		catch (IOException e) {
+			mLogger.warn("Failed to record the checkpoint of {} at {} {}", new Object[] { flowFile, position, kind, e });
+		}
+	}
+
+	synchronized void remove(FlowFile flowFile) {
+		try {
+			Map<String, String> state = getUnexpiredState();
+			if (state.remove(getKey(flowFile)) != null) {
+				mStateManager.setState(state, Scope.LOCAL);
+			}
+		}
+		catch (IOException e) {
+			mLogger.warn("Failed to remove the checkpoint of {}", new Object[] { flowFile, e });
+		}
+	}
+
+	/**
+	 * Drops the checkpoints that expired and returns the UUIDs of their FlowFiles, along with those of the checkpoints
+	 * dropped since the last call
+	 */
+	synchronized Set<String> removeExpired() {
+		try {
+			Map<String, String> state = getUnexpiredState();
+			if (state.size() != mStateManager.getState(Scope.LOCAL).toMap().size()) {
+				mStateManager.setState(state, Scope.LOCAL);
+			}
+		}
+		catch (IOException e) {
+			mLogger.warn("Failed to remove the expired checkpoints", e);
+		}
+
+		Set<String> expired = ImmutableSet.copyOf(mExpired);
+		mExpired.clear();
+		return expired;
+	}
+
+	private Map<String, String> getUnexpiredState() throws IOException {
+		Map<String, String> state = Maps.newHashMap(mStateManager.getState(Scope.LOCAL).toMap());
+		state.entrySet().removeIf(entry -> {
+			List<String> fields = Splitter.on(SEPARATOR).splitToList(entry.getValue());
+			boolean expired;
+			try {
+				expired = fields.size() != FIELDS || isExpired(Long.parseLong(fields.get(3)));
+			}
+			catch (NumberFormatException e) {
+				expired = true;
+			}
+			if (expired) {
+				mExpired.add(entry.getKey());
+			}
+			return expired;
+		});
+		return state;
+	}
+
+	private boolean isExpired(long timestamp) {
+		return System.currentTimeMillis() - timestamp > mRetentionMillis;
+	}
+
+	private static String getKey(FlowFile flowFile) {
+		return flowFile.getAttribute(CoreAttributes.UUID.key());
+	}
+}
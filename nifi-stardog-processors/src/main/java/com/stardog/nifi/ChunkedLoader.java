@@ -0,0 +1,422 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Splits a record-based input, such as N-Triples, N-Quads or CSV, into chunks that end on record boundaries and hands
+ * them to a bounded number of concurrent writers. Each chunk is expected to be committed on its own, so the load is not atomic:
+ * if a chunk fails the chunks that were committed stay committed. No new chunks are started once a chunk has failed.
+ * <p>
+ * Chunks are read ahead only as far as there are free writers, so at most {@code concurrency + 1} chunks are held in
+ * memory at the same time.
+ */
+final class ChunkedLoader {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	interface ChunkWriter {
+
+		void write(Chunk chunk) throws Exception;
+	}
+
+	/**
+	 * Finds where the records of the input end. Implementations may keep state, such as whether the input is within a
+	 * quoted value, so an instance must see all the bytes of the input, in order, through one of its methods.
+	 */
+	interface RecordBoundaries {
+
+		/**
+		 * Returns the index of the byte that ends the first record in {@code [from, to)}, or {@code -1} if no record
+		 * ends in the range. The bytes up to and including the returned index, or all of them, are consumed.
+		 */
+		int indexOfEnd(byte[] bytes, int from, int to);
+
+		/**
+		 * Consumes bytes in which the record ends do not matter
+		 */
+		default void skip(byte[] bytes, int from, int to) {
+			while (from < to) {
+				int end = indexOfEnd(bytes, from, to);
+				if (end < 0) {
+					return;
+				}
+				from = end + 1;
+			}
+		}
+	}
+
+	/**
+	 * Records that end with a line feed, such as N-Triples statements
+	 */
+	static final RecordBoundaries LINES = new RecordBoundaries() {
+		@Override
+		public int indexOfEnd(byte[] bytes, int from, int to) {
+			return indexOf(bytes, (byte) '\n', from, to);
+		}
+
+		@Override
+		public void skip(byte[] bytes, int from, int to) {
+			// Lines do not span anything, so there is no state to keep
+		}
+	};
+
+	private final int mChunkSize;
+
+	private final int mConcurrency;
+
+	private final long mStartOffset;
+
+	private final RecordBoundaries mBoundaries;
+
+	/**
+	 * @param startOffset the offset of the first byte of the input within the whole content, e.g. when resuming a load
+	 */
+	ChunkedLoader(int chunkSize, int concurrency, long startOffset) {
+		this(chunkSize, concurrency, startOffset, LINES);
+	}
+
+	/**
+	 * @param startOffset the offset of the first byte of the input within the whole content, e.g. when resuming a load
+	 * @param boundaries  the record boundaries of the input, which must not have seen any byte of it yet
+	 */
+	ChunkedLoader(int chunkSize, int concurrency, long startOffset, RecordBoundaries boundaries) {
+		mChunkSize = chunkSize;
+		mConcurrency = concurrency;
+		mStartOffset = startOffset;
+		mBoundaries = boundaries;
+	}
+
+	/**
+	 * @param progress called with the new committed offset every time it advances
+	 */
+	Result load(InputStream in, ChunkWriter writer, LongConsumer progress) throws IOException, InterruptedException {
+		Result result = new Result(mStartOffset);
+		Semaphore permits = new Semaphore(mConcurrency);
+		ExecutorService executor = Executors.newFixedThreadPool(
+				mConcurrency, new ThreadFactoryBuilder().setNameFormat("stardog-chunk-loader-%d").setDaemon(true).build());
+		try {
+			byte[] block = new byte[BLOCK_SIZE];
+			ByteArrayOutputStream current = new ByteArrayOutputStream(mChunkSize + BLOCK_SIZE);
+			long offset = mStartOffset;
+			int index = 0;
+			int read;
+			while (!result.hasFailed() && (read = in.read(block)) != -1) {
+				int from = 0;
+				while (from < read) {
+					if (current.size() < mChunkSize) {
+						int length = Math.min(read - from, mChunkSize - current.size());
+						mBoundaries.skip(block, from, from + length);
+						current.write(block, from, length);
+						from += length;
+						continue;
+					}
+
+					int end = mBoundaries.indexOfEnd(block, from, read);
+					if (end < 0) {
+						current.write(block, from, read - from);
+						from = read;
+						continue;
+					}
+
+					current.write(block, from, end + 1 - from);
+					from = end + 1;
+
+					Chunk chunk = new Chunk(index++, offset, current.toByteArray());
+					offset = chunk.getEnd();
+					current.reset();
+					submit(executor, permits, chunk, writer, progress, result);
+					if (result.hasFailed()) {
+						break;
+					}
+				}
+			}
+
+			if (!result.hasFailed() && current.size() > 0) {
+				submit(executor, permits, new Chunk(index, offset, current.toByteArray()), writer, progress, result);
+			}
+
+			// Wait for the chunks in flight
+			permits.acquire(mConcurrency);
+			permits.release(mConcurrency);
+			return result;
+		}
+		finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private static void submit(ExecutorService executor, Semaphore permits, Chunk chunk, ChunkWriter writer,
+	                           LongConsumer progress, Result result) throws InterruptedException {
+		permits.acquire();
+		if (result.hasFailed()) {
+			// A chunk failed while waiting for a free writer
+			permits.release();
+			return;
+		}
+		result.onSubmit();
+		try {
+			executor.execute(() -> {
+				try {
+					writer.write(chunk);
+					result.onCommit(chunk, progress);
+				}
+				catch (Throwable t) {
+					result.onFailure(chunk, t);
+				}
+				finally {
+					permits.release();
+				}
+			});
+		}
+		catch (RuntimeException e) {
+			permits.release();
+			result.onFailure(chunk, e);
+		}
+	}
+
+	/**
+	 * Reads the first record of the input, such as a CSV header, including the byte that ends it
+	 */
+	static byte[] readRecord(InputStream in, RecordBoundaries boundaries) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		byte[] b = new byte[1];
+		while (in.read(b, 0, 1) == 1) {
+			record.write(b[0]);
+			if (boundaries.indexOfEnd(b, 0, 1) == 0) {
+				break;
+			}
+		}
+		return record.toByteArray();
+	}
+
+	private static int indexOf(byte[] bytes, byte b, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * CSV records, which end with a line feed that is not within a quoted value. An escape character that differs from
+	 * the quote character escapes the byte that follows it within a quoted value; a quote character that escapes itself
+	 * simply toggles the quoting twice. The quote and escape characters must be single byte characters.
+	 */
+	static final class CsvRecordBoundaries implements RecordBoundaries {
+
+		private final byte mQuote;
+
+		private final byte mEscape;
+
+		private boolean mQuoted;
+
+		private boolean mEscaped;
+
+		CsvRecordBoundaries(char quote, char escape) {
+			mQuote = (byte) quote;
+			mEscape = (byte) escape;
+		}
+
+		@Override
+		public int indexOfEnd(byte[] bytes, int from, int to) {
+			for (int i = from; i < to; i++) {
+				byte b = bytes[i];
+				if (mEscaped) {
+					mEscaped = false;
+				}
+				else if (mQuoted && b == mEscape && mEscape != mQuote) {
+					mEscaped = true;
+				}
+				else if (b == mQuote) {
+					mQuoted = !mQuoted;
+				}
+				else if (b == '\n' && !mQuoted) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	static final class Chunk {
+
+		private final int mIndex;
+
+		private final long mOffset;
+
+		private final byte[] mData;
+
+		private Chunk(int index, long offset, byte[] data) {
+			mIndex = index;
+			mOffset = offset;
+			mData = data;
+		}
+
+		int getIndex() {
+			return mIndex;
+		}
+
+		/**
+		 * The offset of the first byte of the chunk in the content
+		 */
+		long getOffset() {
+			return mOffset;
+		}
+
+		/**
+		 * The offset following the last byte of the chunk in the content
+		 */
+		long getEnd() {
+			return mOffset + mData.length;
+		}
+
+		InputStream open() {
+			return new ByteArrayInputStream(mData);
+		}
+
+		/**
+		 * Opens the chunk, made of lines that each hold a JSON document, as a single JSON array of the documents, since
+		 * documents that merely follow one another are not a JSON document. Blank lines are skipped.
+		 */
+		InputStream openAsJsonArray() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(mData.length + 2);
+			out.write('[');
+			boolean first = true;
+			int start = 0;
+			for (int i = 0; i <= mData.length; i++) {
+				if (i < mData.length && mData[i] != '\n') {
+					continue;
+				}
+				int end = i > start && mData[i - 1] == '\r' ? i - 1 : i;
+				if (!isBlank(mData, start, end)) {
+					if (!first) {
+						out.write(',');
+					}
+					out.write(mData, start, end - start);
+					first = false;
+				}
+				start = i + 1;
+			}
+			out.write(']');
+			return new ByteArrayInputStream(out.toByteArray());
+		}
+
+		private static boolean isBlank(byte[] data, int start, int end) {
+			for (int i = start; i < end; i++) {
+				if (data[i] != ' ' && data[i] != '\t' && data[i] != '\r') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "chunk " + mIndex + " [" + mOffset + ", " + getEnd() + ")";
+		}
+	}
+
+	/**
+	 * The progress of a load. Chunks commit out of order, so the committed offset is the end of the longest run of
+	 * committed chunks from the start of the input: everything before it is loaded.
+	 */
+	static final class Result {
+
+		/**
+		 * The ends of the committed chunks that follow a chunk that is not committed yet
+		 */
+		private final Map<Integer, Long> mCommittedEnds = Maps.newHashMap();
+
+		private final List<Chunk> mFailed = Lists.newArrayList();
+
+		private Throwable mFailure;
+
+		private int mSubmitted;
+
+		private int mCommitted;
+
+		private int mNextUncommitted;
+
+		private long mCommittedOffset;
+
+		private Result(long startOffset) {
+			mCommittedOffset = startOffset;
+		}
+
+		private synchronized void onSubmit() {
+			mSubmitted++;
+		}
+
+		private synchronized void onCommit(Chunk chunk, LongConsumer progress) {
+			mCommitted++;
+			mCommittedEnds.put(chunk.getIndex(), chunk.getEnd());
+			if (!mCommittedEnds.containsKey(mNextUncommitted)) {
+				return;
+			}
+			while (mCommittedEnds.containsKey(mNextUncommitted)) {
+				mCommittedOffset = mCommittedEnds.remove(mNextUncommitted);
+				mNextUncommitted++;
+			}
+			// Reported while holding the lock so the listener sees the offsets in order
+			progress.accept(mCommittedOffset);
+		}
+
+		private synchronized void onFailure(Chunk chunk, Throwable t) {
+			mFailed.add(chunk);
+			if (mFailure == null) {
+				mFailure = t;
+			}
+		}
+
+		synchronized boolean hasFailed() {
+			return mFailure != null;
+		}
+
+		/**
+		 * The first failure of a chunk, or {@code null} if all chunks were committed
+		 */
+		synchronized Throwable getFailure() {
+			return mFailure;
+		}
+
+		synchronized int getSubmittedChunks() {
+			return mSubmitted;
+		}
+
+		synchronized int getCommittedChunks() {
+			return mCommitted;
+		}
+
+		synchronized List<Chunk> getFailedChunks() {
+			return Collections.unmodifiableList(Lists.newArrayList(mFailed));
+		}
+
+		/**
+		 * The offset up to which all the content is committed
+		 */
+		synchronized long getCommittedOffset() {
+			return mCommittedOffset;
+		}
+	}
+}
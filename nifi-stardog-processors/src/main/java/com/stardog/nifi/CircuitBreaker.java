@@ -0,0 +1,61 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks consecutive failures caused by the server being unavailable. Once the threshold is reached the breaker opens
+ * and processors stop taking FlowFiles until the open period has elapsed. The next attempt after that is a trial: a
+ * success closes the breaker, and a failure opens it again right away since the failure count is only reset by a
+ * success.
+ */
+final class CircuitBreaker {
+
+	private final int mThreshold;
+
+	private final long mOpenNanos;
+
+	private final AtomicInteger mConsecutiveFailures = new AtomicInteger();
+
+	private final AtomicLong mOpenUntil = new AtomicLong();
+
+	private volatile boolean mOpen;
+
+	CircuitBreaker(int threshold, long openPeriod, TimeUnit unit) {
+		mThreshold = threshold;
+		mOpenNanos = unit.toNanos(openPeriod);
+	}
+
+	/**
+	 * Returns false while the breaker is open and the open period has not elapsed yet
+	 */
+	boolean allowRequest() {
+		return !mOpen || System.nanoTime() - mOpenUntil.get() >= 0;
+	}
+
+	void recordSuccess() {
+		mConsecutiveFailures.set(0);
+		mOpen = false;
+	}
+
+	/**
+	 * Records a failure caused by the server being unavailable and returns true if the breaker opened because of it
+	 */
+	boolean recordServerDown() {
+		if (mConsecutiveFailures.incrementAndGet() < mThreshold || !allowRequest()) {
+			return false;
+		}
+		mOpenUntil.set(System.nanoTime() + mOpenNanos);
+		mOpen = true;
+		return true;
+	}
+
+	boolean isOpen() {
+		return mOpen;
+	}
+}
@@ -0,0 +1,199 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+/**
+ * The compression of the content of a FlowFile, detected from its file name, its MIME type or the magic bytes at the
+ * start of the content, in that order. Content is decompressed while it is read so it is never written back to the
+ * content repository decompressed.
+ */
+enum Compression {
+
+	NONE("None", ImmutableList.of(), ImmutableList.of(), new byte[0]) {
+		@Override
+		InputStream decompress(InputStream in) {
+			return in;
+		}
+	},
+
+	GZIP("gzip", ImmutableList.of(".gz", ".gzip"), ImmutableList.of("application/gzip", "application/x-gzip"),
+	     new byte[] { 0x1f, (byte) 0x8b }) {
+		@Override
+		InputStream decompress(InputStream in) throws IOException {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+	},
+
+	// The block header, the first digits of pi, follows the stream header so text starting with "BZh" is not mistaken
+	BZIP2("bzip2", ImmutableList.of(".bz2", ".bzip2"), ImmutableList.of("application/x-bzip2", "application/bzip2"),
+	      new byte[] { 'B', 'Z', 'h', 0, 0x31, 0x41, 0x59, 0x26, 0x53, 0x59 }) {
+		@Override
+		InputStream decompress(InputStream in) throws IOException {
+			return createCompressorStream(CompressorStreamFactory.BZIP2, in);
+		}
+
+		@Override
+		boolean matches(byte[] header, int length) {
+			// The fourth byte is the block size, from '1' to '9'
+			return length >= 4 && header[3] >= '1' && header[3] <= '9' && super.matches(header, length);
+		}
+	},
+
+	XZ("xz", ImmutableList.of(".xz"), ImmutableList.of("application/x-xz"),
+	   new byte[] { (byte) 0xfd, '7', 'z', 'X', 'Z', 0 }) {
+		@Override
+		InputStream decompress(InputStream in) throws IOException {
+			return createCompressorStream(CompressorStreamFactory.XZ, in);
+		}
+	},
+
+	ZSTD("zstd", ImmutableList.of(".zst", ".zstd"), ImmutableList.of("application/zstd"),
+	     new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd }) {
+		@Override
+		InputStream decompress(InputStream in) throws IOException {
+			return createCompressorStream(CompressorStreamFactory.ZSTANDARD, in);
+		}
+	};
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_MAGIC_LENGTH = 10;
+
+	private final String mDisplayName;
+
+	private final List<String> mSuffixes;
+
+	private final List<String> mMimeTypes;
+
+	private final byte[] mMagic;
+
+	Compression(String displayName, List<String> suffixes, List<String> mimeTypes, byte[] magic) {
+		mDisplayName = displayName;
+		mSuffixes = suffixes;
+		mMimeTypes = mimeTypes;
+		mMagic = magic;
+	}
+
+	String getDisplayName() {
+		return mDisplayName;
+	}
+
+	/**
+	 * Wraps a stream of compressed content in a stream of the decompressed content
+	 */
+	abstract InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Returns true if the content starts with the magic bytes of this compression. Bytes that are zero in the magic
+	 * are not compared.
+	 */
+	boolean matches(byte[] header, int length) {
+		if (mMagic.length == 0 || length < mMagic.length) {
+			return false;
+		}
+		for (int i = 0; i < mMagic.length; i++) {
+			if (mMagic[i] != 0 && mMagic[i] != header[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static Compression forDisplayName(String displayName) {
+		for (Compression compression : values()) {
+			if (compression.mDisplayName.equals(displayName)) {
+				return compression;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression: " + displayName);
+	}
+
+	/**
+	 * Returns the compression the file name ends with, or {@link #NONE}
+	 */
+	static Compression forFileName(String filename) {
+		if (filename != null) {
+			String lowerCase = filename.toLowerCase(Locale.ROOT);
+			for (Compression compression : values()) {
+				if (compression.mSuffixes.stream().anyMatch(lowerCase::endsWith)) {
+					return compression;
+				}
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the compression of the MIME type, or {@link #NONE}
+	 */
+	static Compression forMimeType(String mimeType) {
+		if (mimeType != null) {
+			String lowerCase = mimeType.toLowerCase(Locale.ROOT);
+			for (Compression compression : values()) {
+				if (compression.mMimeTypes.contains(lowerCase)) {
+					return compression;
+				}
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the file name without the suffix of its compression, so the format of the content can be told from it
+	 */
+	static String stripSuffix(String filename) {
+		String lowerCase = filename.toLowerCase(Locale.ROOT);
+		for (String suffix : forFileName(filename).mSuffixes) {
+			if (lowerCase.endsWith(suffix)) {
+				return filename.substring(0, filename.length() - suffix.length());
+			}
+		}
+		return filename;
+	}
+
+	/**
+	 * Detects the compression of the content from its magic bytes and decompresses it. The stream is buffered so the
+	 * magic bytes can be read without consuming them.
+	 */
+	static InputStream detectAndDecompress(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		buffered.mark(MAX_MAGIC_LENGTH);
+		byte[] header = new byte[MAX_MAGIC_LENGTH];
+		int length = 0;
+		int read;
+		while (length < header.length && (read = buffered.read(header, length, header.length - length)) != -1) {
+			length += read;
+		}
+		buffered.reset();
+
+		for (Compression compression : values()) {
+			if (compression.matches(header, length)) {
+				return compression.decompress(buffered);
+			}
+		}
+		return buffered;
+	}
+
+	private static InputStream createCompressorStream(String name, InputStream in) throws IOException {
+		try {
+			return new CompressorStreamFactory().createCompressorInputStream(
+					name, in.markSupported() ? in : new BufferedInputStream(in, BUFFER_SIZE), true);
+		}
+		catch (CompressorException e) {
+			throw new IOException("Failed to decompress " + name + " content", e);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+
+/**
+ * Sorts any number of lines with a bounded amount of memory. Lines are buffered until the buffer is full, then sorted
+ * and written to a temporary file, and the sorted files are merged when the lines are read back, so at most one buffer
+ * of lines plus one line per file is held in memory. Duplicate lines are only returned once.
+ */
+final class ExternalSorter implements Closeable {
+
+	private final int mMaxLines;
+
+	private final List<String> mBuffer;
+
+	private final List<Path> mRuns = Lists.newArrayList();
+
+	private final List<BufferedReader> mReaders = Lists.newArrayList();
+
+	/**
+	 * @param maxLines the number of lines held in memory before they are written to a temporary file
+	 */
+	ExternalSorter(int maxLines) {
+		mMaxLines = maxLines;
+		mBuffer = Lists.newArrayListWithCapacity(Math.min(maxLines, 1 << 16));
+	}
+
+	void add(String line) throws IOException {
+		mBuffer.add(line);
+		if (mBuffer.size() >= mMaxLines) {
+			spill();
+		}
+	}
+
+	/**
+	 * Returns a stream whose non-empty lines, without their line breaks, are added to the sorter once they are complete.
+	 * The last line is added when the stream is closed, even without a line break.
+	 */
+	OutputStream newLineOutputStream() {
+		return new LineOutputStream();
+	}
+
+	/**
+	 * The number of temporary files the lines were written to so far
+	 */
+	int getSpilledRuns() {
+		return mRuns.size();
+	}
+
+	private void spill() throws IOException {
+		Collections.sort(mBuffer);
+		Path run = Files.createTempFile("stardog-sort-", ".txt");
+		mRuns.add(run);
+		try (BufferedWriter writer = Files.newBufferedWriter(run, Charsets.UTF_8)) {
+			String previous = null;
+			for (String line : mBuffer) {
+				if (!line.equals(previous)) {
+					writer.write(line);
+					writer.write('\n');
+				}
+				previous = line;
+			}
+		}
+		mBuffer.clear();
+	}
+
+	/**
+	 * Returns the distinct lines in their natural order. No more lines can be added once they are read.
+	 *
+	 * @throws UncheckedIOException from the iterator if a temporary file cannot be read
+	 */
+	Iterator<String> sorted() throws IOException {
+		Collections.sort(mBuffer);
+		List<Iterator<String>> sources = Lists.newArrayList();
+		sources.add(mBuffer.iterator());
+		for (Path run : mRuns) {
+			BufferedReader reader = Files.newBufferedReader(run, Charsets.UTF_8);
+			mReaders.add(reader);
+			sources.add(new LineIterator(reader));
+		}
+		return new DistinctIterator(Iterators.mergeSorted(sources, Comparator.naturalOrder()));
+	}
+
+	/**
+	 * Deletes the temporary files
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (BufferedReader reader : mReaders) {
+			try {
+				reader.close();
+			}
+			catch (IOException e) {
+				failure = e;
+			}
+		}
+		for (Path run : mRuns) {
+			try {
+				Files.deleteIfExists(run);
+			}
+			catch (IOException e) {
+				failure = e;
+			}
+		}
+		mReaders.clear();
+		mRuns.clear();
+		mBuffer.clear();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private final class LineOutputStream extends OutputStream {
+
+		private final ByteArrayOutputStream mLine = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) throws IOException {
+			if (b == '\n') {
+				endLine();
+			}
+			else if (b != '\r') {
+				mLine.write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int start = off;
+			for (int i = off; i < off + len; i++) {
+				if (b[i] == '\n' || b[i] == '\r') {
+					mLine.write(b, start, i - start);
+					if (b[i] == '\n') {
+						endLine();
+					}
+					start = i + 1;
+				}
+			}
+			mLine.write(b, start, off + len - start);
+		}
+
+		@Override
+		public void close() throws IOException {
+			endLine();
+		}
+
+		private void endLine() throws IOException {
+			if (mLine.size() > 0) {
+				add(mLine.toString(Charsets.UTF_8.name()));
+				mLine.reset();
+			}
+		}
+	}
+
+	private static final class LineIterator implements Iterator<String> {
+
+		private final BufferedReader mReader;
+
+		private String mNext;
+
+		private LineIterator(BufferedReader reader) {
+			mReader = reader;
+			mNext = readLine();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return mNext != null;
+		}
+
+		@Override
+		public String next() {
+			if (mNext == null) {
+				throw new NoSuchElementException();
+			}
+			String next = mNext;
+			mNext = readLine();
+			return next;
+		}
+
+		private String readLine() {
+			try {
+				return mReader.readLine();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static final class DistinctIterator implements Iterator<String> {
+
+		private final PeekingIterator<String> mLines;
+
+		private DistinctIterator(Iterator<String> lines) {
+			mLines = Iterators.peekingIterator(lines);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return mLines.hasNext();
+		}
+
+		@Override
+		public String next() {
+			String next = mLines.next();
+			while (mLines.hasNext() && mLines.peek().equals(next)) {
+				mLines.next();
+			}
+			return next;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import javax.security.auth.login.LoginException;
+
+import com.complexible.stardog.StardogException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import org.ietf.jgss.GSSException;
+
+/**
+ * Decides whether a failure to process a FlowFile is worth retrying. Only structured data is used: the types of the
+ * exceptions in the causal chain, the HTTP status code an exception reports and whether the server answered with a
+ * Stardog error. Messages are never inspected, since they may quote the content of the FlowFile, e.g. a parse error at
+ * line 503, and a bad FlowFile must not be retried forever.
+ */
+final class FailureClassifier {
+
+	enum Failure {
+		/**
+		 * The server cannot be reached or is not accepting requests; every FlowFile would fail the same way
+		 */
+		SERVER_DOWN,
+
+		/**
+		 * The operation may succeed if attempted again, e.g. after a timeout or a transaction conflict
+		 */
+		TRANSIENT,
+
+		/**
+		 * The FlowFile, or the configuration, is invalid and attempting the operation again will fail the same way
+		 */
+		PERMANENT
+	}
+
+	private static final Set<Integer> SERVER_DOWN_STATUS = ImmutableSet.of(502, 503, 504);
+
+	/**
+	 * Request timeout, conflict, e.g. between transactions, and too many requests
+	 */
+	private static final Set<Integer> TRANSIENT_STATUS = ImmutableSet.of(408, 409, 429);
+
+	private static final int UNAUTHORIZED_STATUS = 401;
+
+	private FailureClassifier() {
+	}
+
+	static Failure classify(Throwable failure) {
+		for (Throwable cause : Throwables.getCausalChain(failure)) {
+			if (cause instanceof ConnectException
+			    || cause instanceof NoRouteToHostException
+			    || cause instanceof UnknownHostException) {
+				return Failure.SERVER_DOWN;
+			}
+			if (cause instanceof ConnectionPoolExhaustedException
+			    || cause instanceof InterruptedIOException
+			    || cause instanceof SocketException
+			    || cause instanceof TimeoutException) {
+				return Failure.TRANSIENT;
+			}
+
+			Integer status = getStatusCode(cause);
+			if (status != null) {
+				if (SERVER_DOWN_STATUS.contains(status)) {
+					return Failure.SERVER_DOWN;
+				}
+				if (TRANSIENT_STATUS.contains(status)) {
+					return Failure.TRANSIENT;
+				}
+				// Any other status is the answer of a server that understood the request and rejected it
+				return Failure.PERMANENT;
+			}
+			if (cause instanceof StardogException && getErrorCode(cause) != null) {
+				// An error the server reported about the request itself, without a status that says otherwise
+				return Failure.PERMANENT;
+			}
+		}
+
+		return Failure.PERMANENT;
+	}
+
+	/**
+	 * Whether the server rejected the credentials, or the client failed to log in, anywhere in the causal chain
+	 */
+	static boolean isAuthenticationFailure(Throwable failure) {
+		for (Throwable cause : Throwables.getCausalChain(failure)) {
+			Integer status = getStatusCode(cause);
+			if ((status != null && status == UNAUTHORIZED_STATUS)
+			    || cause instanceof LoginException
+			    || cause instanceof GSSException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the HTTP status code reported by the exception, as the HTTP client exceptions and the Stardog client do
+	 * with a {@code getStatusCode()} or {@code getStatus()} method, or {@code null} if it reports none
+	 */
+	static Integer getStatusCode(Throwable t) {
+		for (String name : new String[] { "getStatusCode", "getStatus" }) {
+			Object status = invoke(t, name);
+			if (status instanceof Integer && (Integer) status >= 100 && (Integer) status < 600) {
+				return (Integer) status;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the error code the server sent with the failure, or {@code null} if there is none
+	 */
+	static String getErrorCode(Throwable t) {
+		Object code = invoke(t, "getErrorCode");
+		return code instanceof String && !((String) code).isEmpty() ? (String) code : null;
+	}
+
+	private static Object invoke(Throwable t, String name) {
+		try {
+			Method method = t.getClass().getMethod(name);
+			return method.getParameterCount() == 0 ? method.invoke(t) : null;
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
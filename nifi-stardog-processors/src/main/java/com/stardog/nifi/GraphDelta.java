@@ -0,0 +1,167 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import com.stardog.stark.BNode;
+import com.stardog.stark.Statement;
+import com.stardog.stark.io.RDFFormats;
+import com.stardog.stark.io.RDFHandler;
+import com.stardog.stark.io.RDFWriter;
+import com.stardog.stark.io.RDFWriters;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import org.apache.nifi.processor.exception.ProcessException;
+
+/**
+ * Computes the statements to add to and remove from a graph so it ends up with the statements of a new snapshot. The
+ * statements of the snapshot and of the graph are written as N-Triples lines, sorted with a bounded amount of memory
+ * and merged, so neither side has to fit in memory.
+ * <p>
+ * Statements are compared by their N-Triples serialization, so literals that the database stores in a canonical form
+ * may differ from the incoming ones and be both removed and added. The removals must therefore be applied before the
+ * additions. Statements with blank nodes are rejected: their labels differ every time a document is parsed, so they
+ * can neither be matched nor removed.
+ */
+final class GraphDelta implements Closeable {
+
+	private final ExternalSorter mSnapshot;
+
+	private final ExternalSorter mCurrent;
+
+	private long mAdded;
+
+	private long mRemoved;
+
+	/**
+	 * @param statementsInMemory the number of statements of each side that are sorted in memory before they are written to
+	 *                           a temporary file
+	 */
+	GraphDelta(int statementsInMemory) {
+		mSnapshot = new ExternalSorter(statementsInMemory);
+		mCurrent = new ExternalSorter(statementsInMemory);
+	}
+
+	/**
+	 * Returns the handler of the statements of the new snapshot
+	 */
+	RDFHandler snapshot() {
+		return new SortingHandler(mSnapshot);
+	}
+
+	/**
+	 * Returns the handler of the statements currently in the graph
+	 */
+	RDFHandler current() {
+		return new SortingHandler(mCurrent);
+	}
+
+	/**
+	 * Writes, as N-Triples, the statements of the snapshot that are not in the graph to the additions and the statements
+	 * of the graph that are not in the snapshot to the removals. Both handlers must have ended.
+	 */
+	void compute(OutputStream additions, OutputStream removals) throws IOException {
+		try {
+			PeekingIterator<String> snapshot = Iterators.peekingIterator(mSnapshot.sorted());
+			PeekingIterator<String> current = Iterators.peekingIterator(mCurrent.sorted());
+			while (snapshot.hasNext() || current.hasNext()) {
+				int comparison = !current.hasNext() ? -1
+				                 : !snapshot.hasNext() ? 1
+				                 : snapshot.peek().compareTo(current.peek());
+				if (comparison < 0) {
+					write(additions, snapshot.next());
+					mAdded++;
+				}
+				else if (comparison > 0) {
+					write(removals, current.next());
+					mRemoved++;
+				}
+				else {
+					snapshot.next();
+					current.next();
+				}
+			}
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static void write(OutputStream out, String line) throws IOException {
+		out.write(line.getBytes(Charsets.UTF_8));
+		out.write('\n');
+	}
+
+	long getAdded() {
+		return mAdded;
+	}
+
+	long getRemoved() {
+		return mRemoved;
+	}
+
+	/**
+	 * Deletes the temporary files of both sides
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			mSnapshot.close();
+		}
+		finally {
+			mCurrent.close();
+		}
+	}
+
+	/**
+	 * Writes the statements it handles as N-Triples lines to a sorter
+	 */
+	private static final class SortingHandler implements RDFHandler {
+
+		private final OutputStream mLines;
+
+		private final RDFWriter mWriter;
+
+		private SortingHandler(ExternalSorter sorter) {
+			mLines = sorter.newLineOutputStream();
+			mWriter = RDFWriters.to(mLines, RDFFormats.NTRIPLES)
+			                    .orElseThrow(() -> new ProcessException("No writer available for " + RDFFormats.NTRIPLES));
+		}
+
+		@Override
+		public void start() {
+			mWriter.start();
+		}
+
+		@Override
+		public void namespace(String prefix, String iri) {
+		}
+
+		@Override
+		public void handle(Statement statement) {
+			if (statement.subject() instanceof BNode || statement.object() instanceof BNode) {
+				throw new ProcessException("Statements with blank nodes cannot be compared: " + statement);
+			}
+			mWriter.handle(statement);
+		}
+
+		@Override
+		public void end() {
+			mWriter.end();
+			try {
+				mLines.close();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
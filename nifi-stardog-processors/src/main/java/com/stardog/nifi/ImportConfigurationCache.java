@@ -0,0 +1,195 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import com.complexible.common.io.Files2;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the mappings files, the properties files and the import options merged from the processor properties and a
+ * properties file, so FlowFiles imported with the same configuration do not read and parse it again. Files are keyed by
+ * path, last modified time and size, so a changed file is read again on its next use, and the least recently used
+ * entries are evicted once the cache is full.
+ */
+final class ImportConfigurationCache {
+
+	private static final int MAX_ENTRIES = 64;
+
+	private final Cache<FileKey, String> mMappings = CacheBuilder.newBuilder()
+	                                                             .maximumSize(MAX_ENTRIES)
+	                                                             .build();
+
+	private final Cache<FileKey, Map<String, String>> mProperties = CacheBuilder.newBuilder()
+	                                                                            .maximumSize(MAX_ENTRIES)
+	                                                                            .build();
+
+	private final Cache<OptionsKey, Map<String, String>> mOptions = CacheBuilder.newBuilder()
+	                                                                            .maximumSize(MAX_ENTRIES)
+	                                                                            .build();
+
+	/**
+	 * Returns the content of the mappings file
+	 */
+	String getMapping(String path) throws IOException {
+		FileKey key = FileKey.of(path);
+		return get(mMappings, key, () -> Files2.toString(key.mPath, Charsets.UTF_8));
+	}
+
+	/**
+	 * Returns the processor properties overridden by the properties of the file, if any
+	 *
+	 * @param processorOptions the import options set by the processor properties
+	 * @param propertiesPath   the path of the properties file, or {@code null}
+	 */
+	Properties getOptions(Properties processorOptions, String propertiesPath) throws IOException {
+		FileKey fileKey = propertiesPath == null ? null : FileKey.of(propertiesPath);
+		OptionsKey key = new OptionsKey(toMap(processorOptions), fileKey);
+		Map<String, String> options = get(mOptions, key, () -> {
+			ImmutableMap.Builder<String, String> merged = ImmutableMap.builder();
+			Map<String, String> fromFile = fileKey == null
+			                               ? ImmutableMap.of()
+			                               : get(mProperties, fileKey, () -> loadProperties(fileKey.mPath));
+			key.mProcessorOptions.forEach((name, value) -> {
+				if (!fromFile.containsKey(name)) {
+					merged.put(name, value);
+				}
+			});
+			return merged.putAll(fromFile).build();
+		});
+
+		// Copied since the import may modify the options it is given
+		Properties properties = new Properties();
+		properties.putAll(options);
+		return properties;
+	}
+
+	private static Map<String, String> loadProperties(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(path)) {
+			properties.load(is);
+		}
+		return toMap(properties);
+	}
+
+	private static Map<String, String> toMap(Properties properties) {
+		ImmutableMap.Builder<String, String> map = ImmutableMap.builder();
+		properties.stringPropertyNames().forEach(name -> map.put(name, properties.getProperty(name)));
+		return map.build();
+	}
+
+	private interface Loader<V> {
+
+		V load() throws IOException;
+	}
+
+	private static <K, V> V get(Cache<K, V> cache, K key, Loader<V> loader) throws IOException {
+		try {
+			return cache.get(key, () -> {
+				try {
+					return loader.load();
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			Throwables.throwIfUnchecked(cause);
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Identifies a version of a file
+	 */
+	private static final class FileKey {
+
+		private final Path mPath;
+
+		private final long mLastModified;
+
+		private final long mSize;
+
+		private FileKey(Path path, long lastModified, long size) {
+			mPath = path;
+			mLastModified = lastModified;
+			mSize = size;
+		}
+
+		static FileKey of(String path) throws IOException {
+			Path filePath = Paths.get(path).toAbsolutePath().normalize();
+			BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+			return new FileKey(filePath, attributes.lastModifiedTime().toMillis(), attributes.size());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			FileKey that = (FileKey) o;
+			return mLastModified == that.mLastModified && mSize == that.mSize && mPath.equals(that.mPath);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mPath, mLastModified, mSize);
+		}
+	}
+
+	private static final class OptionsKey {
+
+		private final Map<String, String> mProcessorOptions;
+
+		private final FileKey mPropertiesFile;
+
+		private OptionsKey(Map<String, String> processorOptions, FileKey propertiesFile) {
+			mProcessorOptions = processorOptions;
+			mPropertiesFile = propertiesFile;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			OptionsKey that = (OptionsKey) o;
+			return mProcessorOptions.equals(that.mProcessorOptions) && Objects.equals(mPropertiesFile, that.mPropertiesFile);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mProcessorOptions, mPropertiesFile);
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package com.stardog.nifi;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import com.complexible.stardog.api.ConnectionCredentials;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.nifi.logging.ComponentLog;
+
+/**
+ * Caches the Kerberos credentials of each keytab and principal so the keytab is read, and the ticket negotiated with
+ * the KDC, once per ticket rather than once per connection. Reusing the same credentials lets new connections
+ * authenticate with the tickets already held by the logged-in subject. Credentials are renewed in the background once
+ * {@link #RENEWAL_FRACTION} of the lifetime of their ticket has passed, so connections never wait for the KDC after the
+ * first login, and are dropped when the keytab is modified or they are not used for a day. Logins and renewal failures
+ * are reported to the log, and counted in the {@link Metrics}, of the processor that last used the credentials.
+ * <p>
+ * The renewer thread only runs while a scheduled processor {@link #register() uses} the cache. Credentials that are due
+ * for renewal while it does not run are renewed by the next connection that uses them.
+ */
+final class Krb5CredentialsCache {
+
+	/**
+	 * The fraction of the lifetime of a ticket after which it is renewed
+	 */
+	static final double RENEWAL_FRACTION = 0.8;
+
+	/**
+	 * Used when the lifetime of the ticket is not known; well within the 10 hour ticket lifetime that KDCs use by default
+	 */
+	static final long DEFAULT_RENEWAL_MINUTES = 60;
+
+	private static final long RENEWAL_RETRY_MINUTES = 5;
+
+	private static final long RENEWAL_CHECK_SECONDS = 60;
+
+	private static final long UNUSED_EXPIRATION_HOURS = 24;
+
+	private static final String TICKET_GRANTING_SERVICE = "krbtgt/";
+
+	private static final Krb5CredentialsCache INSTANCE = new Krb5CredentialsCache();
+
+	private final Cache<Key, Entry> mCredentials = CacheBuilder.newBuilder().build();
+
+	/**
+	 * Renews the credentials while {@link #mUsers} is not zero, {@code null} otherwise
+	 */
+	private ScheduledExecutorService mRenewer;
+
+	private int mUsers;
+
+	private Krb5CredentialsCache() {
+	}
+
+	static Krb5CredentialsCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Records that a scheduled processor uses the cache, starting the renewer thread if it is the first
+	 */
+	synchronized void register() {
+		if (mUsers++ == 0) {
+			mRenewer = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("stardog-krb5-renewer-%d").setDaemon(true).build());
+			mRenewer.scheduleWithFixedDelay(this::renew, RENEWAL_CHECK_SECONDS, RENEWAL_CHECK_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Records that a processor stopped using the cache, stopping the renewer thread and dropping the credentials if it
+	 * was the last
+	 */
+	synchronized void unregister() {
+		if (mUsers == 0) {
+			return;
+		}
+		if (--mUsers == 0) {
+			mRenewer.shutdownNow();
+			mRenewer = null;
+			mCredentials.invalidateAll();
+		}
+	}
+
+	synchronized boolean isRenewing() {
+		return mRenewer != null;
+	}
+
+	ConnectionCredentials get(String keytab, String principal, ComponentLog logger, Metrics metrics) {
+		Key key = new Key(keytab, principal);
+		try {
+			Entry entry = mCredentials.get(key, () -> login(key, logger, metrics, false));
+			if (entry.mKeytabModified != new File(keytab).lastModified()) {
+				logger.info("Keytab {} of {} was modified; logging in again", new Object[] { keytab, principal });
+				mCredentials.asMap().remove(key, entry);
+				entry = mCredentials.get(key, () -> login(key, logger, metrics, false));
+			}
+			else if (System.nanoTime() - entry.mRenewAt >= 0 && !isRenewing()) {
+				Entry renewed = login(key, logger, metrics, true);
+				mCredentials.asMap().replace(key, entry, renewed);
+				entry = renewed;
+			}
+			entry.mLastUsed = System.nanoTime();
+			entry.mLogger = logger;
+			entry.mMetrics = metrics;
+			return entry.mCredentials;
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Drops the cached credentials of the principal so the next connection logs in again, e.g. after the server
+	 * rejected them.
+	 */
+	void invalidate(String keytab, String principal) {
+		mCredentials.invalidate(new Key(keytab, principal));
+	}
+
+	private static Entry login(Key key, ComponentLog logger, Metrics metrics, boolean renewal) {
+		long start = System.nanoTime();
+		// Read before the login so a keytab modified during the login is read again by the next connection
+		long keytabModified = new File(key.mKeytab).lastModified();
+		ConnectionCredentials credentials = ConnectionCredentials.createKrb5Credential(new File(key.mKeytab),
+		                                                                               key.mPrincipal, true);
+		long renewalMillis = getRenewalDelay(credentials);
+		metrics.recordLogin(System.nanoTime() - start, renewal);
+		logger.info("Obtained Kerberos credentials for {} in {} ms; renewing them in {} minutes",
+		            new Object[] { key.mPrincipal, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+		                           TimeUnit.MILLISECONDS.toMinutes(renewalMillis) });
+		return new Entry(credentials, keytabModified, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(renewalMillis), logger,
+		                 metrics);
+	}
+
+	/**
+	 * Returns the time until {@link #RENEWAL_FRACTION} of the lifetime of the ticket granting ticket of the credentials
+	 * has passed, or {@link #DEFAULT_RENEWAL_MINUTES} if the credentials do not expose it
+	 */
+	private static long getRenewalDelay(ConnectionCredentials credentials) {
+		KerberosTicket ticket = getTicketGrantingTicket(credentials);
+		if (ticket == null || ticket.getStartTime() == null || ticket.getEndTime() == null) {
+			return TimeUnit.MINUTES.toMillis(DEFAULT_RENEWAL_MINUTES);
+		}
+		long start = ticket.getStartTime().getTime();
+		long renewal = start + (long) ((ticket.getEndTime().getTime() - start) * RENEWAL_FRACTION);
+		return Math.max(0, renewal - System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the ticket granting ticket held by the {@link Subject} the credentials expose, or {@code null} if they
+	 * expose none
+	 */
+	private static KerberosTicket getTicketGrantingTicket(ConnectionCredentials credentials) {
+		for (Method method : credentials.getClass().getMethods()) {
+			if (method.getParameterCount() != 0 || !Subject.class.isAssignableFrom(method.getReturnType())) {
+				continue;
+			}
+			try {
+				Subject subject = (Subject) method.invoke(credentials);
+				if (subject == null) {
+					continue;
+				}
+				for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+					if (ticket.getServer() != null && ticket.getServer().getName().startsWith(TICKET_GRANTING_SERVICE)) {
+						return ticket;
+					}
+				}
+			}
+			catch (ReflectiveOperationException | RuntimeException e) {
+				// Look for another subject
+			}
+		}
+		return null;
+	}
+
+	private void renew() {
+		long unusedNanos = TimeUnit.HOURS.toNanos(UNUSED_EXPIRATION_HOURS);
+		for (Map.Entry<Key, Entry> cached : mCredentials.asMap().entrySet()) {
+			Key key = cached.getKey();
+			Entry entry = cached.getValue();
+			long now = System.nanoTime();
+			if (now - entry.mLastUsed > unusedNanos) {
+				mCredentials.asMap().remove(key, entry);
+				continue;
+			}
+			if (now - entry.mRenewAt < 0) {
+				continue;
+			}
+
+			ComponentLog logger = entry.mLogger;
+			Metrics metrics = entry.mMetrics;
+			try {
+				// Replace the entry only once the new ticket is obtained so connections keep using the old one meanwhile
+				Entry renewed = login(key, logger, metrics, true);
+				renewed.mLastUsed = entry.mLastUsed;
+				mCredentials.asMap().replace(key, entry, renewed);
+			}
+			catch (RuntimeException e) {
+				entry.mRenewAt = now + TimeUnit.MINUTES.toNanos(RENEWAL_RETRY_MINUTES);
+				metrics.recordRenewalFailure();
+				logger.warn("Failed to renew Kerberos credentials for {}; will retry in {} minutes",
+				            new Object[] { key.mPrincipal, RENEWAL_RETRY_MINUTES }, e);
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private final ConnectionCredentials mCredentials;
+
+		private final long mKeytabModified;
+
+		private volatile long mRenewAt;
+
+		private volatile long mLastUsed = System.nanoTime();
+
+		/**
+		 * The log of the processor that last used the credentials, to which their renewal is reported
+		 */
+		private volatile ComponentLog mLogger;
+
+		/**
+		 * The metrics of the processor that last used the credentials, in which their renewal is counted
+		 */
+		private volatile Metrics mMetrics;
+
+		private Entry(ConnectionCredentials credentials, long keytabModified, long renewAt, ComponentLog logger,
+		              Metrics metrics) {
+			mCredentials = credentials;
+			mKeytabModified = keytabModified;
+			mRenewAt = renewAt;
+			mLogger = logger;
+			mMetrics = metrics;
+		}
+	}
+
+	/**
+	 * Counts the logins of a processor, including those made by the renewer thread on its behalf, until they are
+	 * {@link #drainTo(BiConsumer) drained} into the counters of a session
+	 */
+	static final class Metrics {
+
+		static final String LOGINS_COUNTER = "Kerberos Logins";
+
+		static final String RENEWALS_COUNTER = "Kerberos Renewals";
+
+		static final String RENEWAL_FAILURES_COUNTER = "Kerberos Renewal Failures";
+
+		static final String NEGOTIATION_MILLIS_COUNTER = "Kerberos Negotiation Millis";
+
+		private final AtomicLong mLogins = new AtomicLong();
+
+		private final AtomicLong mRenewals = new AtomicLong();
+
+		private final AtomicLong mRenewalFailures = new AtomicLong();
+
+		private final AtomicLong mNegotiationNanos = new AtomicLong();
+
+		void recordLogin(long negotiationNanos, boolean renewal) {
+			(renewal ? mRenewals : mLogins).incrementAndGet();
+			mNegotiationNanos.addAndGet(negotiationNanos);
+		}
+
+		void recordRenewalFailure() {
+			mRenewalFailures.incrementAndGet();
+		}
+
+		/**
+		 * Hands the counts recorded since the last call to the counters, by name, and resets them
+		 */
+		void drainTo(BiConsumer<String, Long> counters) {
+			drain(mLogins, LOGINS_COUNTER, counters);
+			drain(mRenewals, RENEWALS_COUNTER, counters);
+			drain(mRenewalFailures, RENEWAL_FAILURES_COUNTER, counters);
+			// Whole milliseconds only, so the remainder is counted with the next logins
+			long millis = TimeUnit.NANOSECONDS.toMillis(mNegotiationNanos.get());
+			if (millis > 0) {
+				mNegotiationNanos.addAndGet(-TimeUnit.MILLISECONDS.toNanos(millis));
+				counters.accept(NEGOTIATION_MILLIS_COUNTER, millis);
+			}
+		}
+
+		private static void drain(AtomicLong count, String counter, BiConsumer<String, Long> counters) {
+			long value = count.getAndSet(0);
+			if (value > 0) {
+				counters.accept(counter, value);
+			}
+		}
+	}
+
+	private static final class Key {
+
+		private final String mKeytab;
+
+		private final String mPrincipal;
+
+		private Key(String keytab, String principal) {
+			mKeytab = keytab;
+			mPrincipal = principal;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) o;
+			return Objects.equals(mKeytab, that.mKeytab) && Objects.equals(mPrincipal, that.mPrincipal);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mKeytab, mPrincipal);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.stardog.nifi;
+
+import com.complexible.common.rdf.query.SPARQLUtil;
+import com.complexible.common.rdf.query.SPARQLUtil.QueryType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A SPARQL query string along with its detected {@link QueryType type}. Instances are cached by query string so the
+ * type of a query that is executed repeatedly is only detected once.
+ */
+final class ParsedQuery {
+
+	private static final int MAX_CACHED_QUERIES = 1024;
+
+	/**
+	 * Queries longer than this are likely unique, e.g. generated from FlowFile attributes, and not worth caching
+	 */
+	private static final int MAX_CACHED_QUERY_LENGTH = 64 * 1024;
+
+	private static final Cache<String, ParsedQuery> CACHE = CacheBuilder.newBuilder()
+	                                                                    .maximumSize(MAX_CACHED_QUERIES)
+	                                                                    .build();
+
+	private final String mQuery;
+
+	private volatile QueryType mType;
+
+	private ParsedQuery(String query, QueryType type) {
+		mQuery = query;
+		mType = type;
+	}
+
+	/**
+	 * Returns the cached instance for the query, if any, otherwise wraps the query without detecting its type until
+	 * {@link #getType()} is called
+	 */
+	static ParsedQuery of(String query) {
+		ParsedQuery parsed = CACHE.getIfPresent(query);
+		if (parsed == null) {
+			parsed = new ParsedQuery(query, null);
+			if (query.length() <= MAX_CACHED_QUERY_LENGTH) {
+				CACHE.put(query, parsed);
+			}
+		}
+		return parsed;
+	}
+
+	static ParsedQuery parse(String query) {
+		return new ParsedQuery(query, SPARQLUtil.getType(query));
+	}
+
+	String getQuery() {
+		return mQuery;
+	}
+
+	QueryType getType() {
+		if (mType == null) {
+			mType = SPARQLUtil.getType(mQuery);
+		}
+		return mType;
+	}
+}
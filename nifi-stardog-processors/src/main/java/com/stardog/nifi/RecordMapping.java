@@ -0,0 +1,305 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.stardog.stark.IRI;
+import com.stardog.stark.Resource;
+import com.stardog.stark.Statement;
+import com.stardog.stark.Value;
+import com.stardog.stark.Values;
+import com.stardog.stark.vocabs.RDF;
+import com.stardog.stark.vocabs.XSD;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.serialization.record.DataType;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.type.ArrayDataType;
+
+/**
+ * Maps records to statements with templates in the style of SMS mappings, compiled once for a record schema. The subject
+ * of every record is an IRI template such as {@code http://example.com/person/{id}}, where each {@code {field}} is
+ * replaced by the value of the field, escaped to fit in an IRI. The object templates are:
+ * <ul>
+ *     <li>{@code {field}}: a literal typed after the value of the field, one per element if the field is an array</li>
+ *     <li>{@code <http://example.com/{field}>}: an IRI</li>
+ *     <li>anything else: a string literal with the fields replaced by their values</li>
+ * </ul>
+ * No statement is made for a template that refers to a field without a value. Templates cannot refer to records, maps
+ * or arrays, except that a typed literal template may refer to an array of scalar values. Fields that hold records or
+ * maps are not mapped to typed literals in a predicate namespace.
+ */
+final class RecordMapping {
+
+	private static final Pattern FIELD = Pattern.compile("\\{([^{}]+)}");
+
+	private static final Escaper IRI_ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+
+	private final Template mSubject;
+
+	private final IRI mRecordClass;
+
+	private final List<PredicateObject> mPredicateObjects;
+
+	private RecordMapping(Template subject, IRI recordClass, List<PredicateObject> predicateObjects) {
+		mSubject = subject;
+		mRecordClass = recordClass;
+		mPredicateObjects = predicateObjects;
+	}
+
+	/**
+	 * @param recordClass        the class of the subjects, or {@code null}
+	 * @param objectTemplates    the object template of each predicate
+	 * @param predicateNamespace if not {@code null}, every field of the schema is also mapped to a typed literal with the
+	 *                           predicate made of the namespace followed by the name of the field
+	 * @throws ProcessException if a template refers to a field that is not in the schema or has no scalar value
+	 */
+	static RecordMapping compile(RecordSchema schema, String subjectTemplate, IRI recordClass,
+	                             Map<IRI, String> objectTemplates, String predicateNamespace) {
+		Template subject = Template.compile(schema, subjectTemplate, true);
+
+		List<PredicateObject> predicateObjects = Lists.newArrayList();
+		objectTemplates.forEach((predicate, objectTemplate) ->
+				predicateObjects.add(PredicateObject.compile(schema, predicate, objectTemplate)));
+		if (predicateNamespace != null) {
+			for (RecordField field : schema.getFields()) {
+				predicateObjects.add(new PredicateObject(Values.iri(predicateNamespace + IRI_ESCAPER.escape(field.getFieldName())),
+				                                         null, false, field.getFieldName()));
+			}
+		}
+
+		return new RecordMapping(subject, recordClass, ImmutableList.copyOf(predicateObjects));
+	}
+
+	/**
+	 * Hands the statements of the record to the consumer; none if the subject cannot be made
+	 */
+	void map(Record record, Consumer<Statement> statements) {
+		String subjectIRI = mSubject.render(record);
+		if (subjectIRI == null) {
+			return;
+		}
+
+		Resource subject = Values.iri(subjectIRI);
+		if (mRecordClass != null) {
+			statements.accept(Values.statement(subject, RDF.TYPE, mRecordClass));
+		}
+		for (PredicateObject predicateObject : mPredicateObjects) {
+			predicateObject.map(record, subject, statements);
+		}
+	}
+
+	private static final class PredicateObject {
+
+		private final IRI mPredicate;
+
+		/**
+		 * The template of IRIs or string literals, or {@code null} for typed literals
+		 */
+		private final Template mTemplate;
+
+		private final boolean mIsIRI;
+
+		/**
+		 * The field whose values are the typed literals
+		 */
+		private final String mField;
+
+		private PredicateObject(IRI predicate, Template template, boolean isIRI, String field) {
+			mPredicate = predicate;
+			mTemplate = template;
+			mIsIRI = isIRI;
+			mField = field;
+		}
+
+		static PredicateObject compile(RecordSchema schema, IRI predicate, String objectTemplate) {
+			String template = objectTemplate.trim();
+			if (template.startsWith("<") && template.endsWith(">")) {
+				return new PredicateObject(predicate, Template.compile(schema, template.substring(1, template.length() - 1), true),
+				                           true, null);
+			}
+
+			Matcher matcher = FIELD.matcher(template);
+			if (matcher.matches()) {
+				Template.checkField(schema, matcher.group(1), objectTemplate, true);
+				return new PredicateObject(predicate, null, false, matcher.group(1));
+			}
+			return new PredicateObject(predicate, Template.compile(schema, objectTemplate, false), false, null);
+		}
+
+		void map(Record record, Resource subject, Consumer<Statement> statements) {
+			if (mField != null) {
+				Object value = record.getValue(mField);
+				if (value instanceof Object[]) {
+					for (Object element : (Object[]) value) {
+						map(subject, toLiteral(element), statements);
+					}
+				}
+				else if (value instanceof Collection) {
+					for (Object element : (Collection<?>) value) {
+						map(subject, toLiteral(element), statements);
+					}
+				}
+				else {
+					map(subject, toLiteral(value), statements);
+				}
+				return;
+			}
+
+			String object = mTemplate.render(record);
+			if (object != null) {
+				map(subject, mIsIRI ? Values.iri(object) : Values.literal(object), statements);
+			}
+		}
+
+		private void map(Resource subject, Value object, Consumer<Statement> statements) {
+			if (object != null) {
+				statements.accept(Values.statement(subject, mPredicate, object));
+			}
+		}
+	}
+
+	/**
+	 * Returns the literal of a field value typed after its Java type, or {@code null} if it has no literal
+	 */
+	static Value toLiteral(Object value) {
+		if (value == null || value instanceof Record || value instanceof Map) {
+			return null;
+		}
+		if (value instanceof Boolean) {
+			return Values.literal(value.toString(), XSD.BOOLEAN);
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return Values.literal(value.toString(), XSD.INT);
+		}
+		if (value instanceof Long) {
+			return Values.literal(value.toString(), XSD.LONG);
+		}
+		if (value instanceof BigInteger) {
+			return Values.literal(value.toString(), XSD.INTEGER);
+		}
+		if (value instanceof Float) {
+			return Values.literal(value.toString(), XSD.FLOAT);
+		}
+		if (value instanceof Double) {
+			return Values.literal(value.toString(), XSD.DOUBLE);
+		}
+		if (value instanceof BigDecimal) {
+			return Values.literal(((BigDecimal) value).toPlainString(), XSD.DECIMAL);
+		}
+		if (value instanceof java.sql.Timestamp) {
+			return Values.literal(((java.sql.Timestamp) value).toInstant().toString(), XSD.DATETIME);
+		}
+		if (value instanceof java.sql.Date) {
+			return Values.literal(value.toString(), XSD.DATE);
+		}
+		if (value instanceof java.sql.Time) {
+			return Values.literal(value.toString(), XSD.TIME);
+		}
+		if (value instanceof java.util.Date) {
+			return Values.literal(((java.util.Date) value).toInstant().toString(), XSD.DATETIME);
+		}
+		return Values.literal(value.toString());
+	}
+
+	/**
+	 * A string with {@code {field}} placeholders, split once into its constant parts and field names
+	 */
+	private static final class Template {
+
+		private final List<String> mParts;
+
+		private final boolean mEscape;
+
+		/**
+		 * @param parts the constant parts at even and the field names at odd indexes
+		 */
+		private Template(List<String> parts, boolean escape) {
+			mParts = parts;
+			mEscape = escape;
+		}
+
+		static Template compile(RecordSchema schema, String template, boolean escape) {
+			List<String> parts = Lists.newArrayList();
+			Matcher matcher = FIELD.matcher(template);
+			int end = 0;
+			while (matcher.find()) {
+				checkField(schema, matcher.group(1), template, false);
+				parts.add(template.substring(end, matcher.start()));
+				parts.add(matcher.group(1));
+				end = matcher.end();
+			}
+			parts.add(template.substring(end));
+			return new Template(ImmutableList.copyOf(parts), escape);
+		}
+
+		/**
+		 * @param allowArray whether the field may be an array of scalar values
+		 */
+		static void checkField(RecordSchema schema, String field, String template, boolean allowArray) {
+			Optional<RecordField> recordField = schema.getField(field);
+			if (!recordField.isPresent()) {
+				throw new ProcessException("Field '" + field + "' of template '" + template + "' is not in the record schema " +
+				                           schema.getFieldNames());
+			}
+
+			DataType dataType = recordField.get().getDataType();
+			if (allowArray && dataType.getFieldType() == RecordFieldType.ARRAY) {
+				dataType = ((ArrayDataType) dataType).getElementType();
+			}
+			if (!isScalarType(dataType)) {
+				throw new ProcessException("Field '" + field + "' of template '" + template + "' is of type " + dataType +
+				                           ", which has no scalar value");
+			}
+		}
+
+		private static boolean isScalarType(DataType dataType) {
+			RecordFieldType type = dataType.getFieldType();
+			return type != RecordFieldType.RECORD && type != RecordFieldType.MAP && type != RecordFieldType.ARRAY;
+		}
+
+		/**
+		 * Returns the template with the fields replaced by their values, or {@code null} if a field has no value or, as a
+		 * field of a choice type may, holds a value that is not scalar
+		 */
+		String render(Record record) {
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < mParts.size(); i++) {
+				if (i % 2 == 0) {
+					result.append(mParts.get(i));
+					continue;
+				}
+
+				Object value = record.getValue(mParts.get(i));
+				if (value == null || !isScalar(value)) {
+					return null;
+				}
+				String string = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+				result.append(mEscape ? IRI_ESCAPER.escape(string) : string);
+			}
+			return result.toString();
+		}
+
+		private static boolean isScalar(Object value) {
+			return !(value instanceof Record || value instanceof Map || value instanceof Object[] || value instanceof Collection);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.stardog.nifi;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.reasoning.ReasoningConnection;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the reasoning schemas of each endpoint for all processor instances, so that validating the Reasoning Schema
+ * property, which NiFi does on every UI refresh, flow load and cluster sync, is a local lookup. The schemas of an
+ * endpoint are fetched once and then refreshed in the background while the stale value keeps being served.
+ */
+final class SchemaCache {
+
+	private static final long REFRESH_SECONDS = 30;
+
+	private static final long EXPIRATION_MINUTES = 10;
+
+	private static final int MAX_ENDPOINTS = 256;
+
+	private static final SchemaCache INSTANCE = new SchemaCache();
+
+	private final LoadingCache<Key, Set<String>> mSchemas;
+
+	private SchemaCache() {
+		Executor refresher = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setNameFormat("stardog-schema-refresher-%d").setDaemon(true).build());
+		mSchemas = CacheBuilder.newBuilder()
+		                       .maximumSize(MAX_ENDPOINTS)
+		                       .refreshAfterWrite(REFRESH_SECONDS, TimeUnit.SECONDS)
+		                       .expireAfterAccess(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+		                       .build(CacheLoader.asyncReloading(new CacheLoader<Key, Set<String>>() {
+			                       @Override
+			                       public Set<String> load(Key key) {
+				                       return fetch(key.mConfiguration);
+			                       }
+		                       }, refresher));
+	}
+
+	static SchemaCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the reasoning schemas of the endpoint
+	 *
+	 * @param endpoint      identifies the endpoint and the credentials used to connect to it; must change whenever the
+	 *                      configuration does
+	 * @param configuration the configuration used to fetch the schemas when they are not cached, and to refresh them;
+	 *                      it is held by the cache, so it must not refer to anything that only lives for the call
+	 */
+	Set<String> getSchemas(String endpoint, ConnectionConfiguration configuration) {
+		try {
+			return mSchemas.get(new Key(endpoint, configuration));
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static Set<String> fetch(ConnectionConfiguration configuration) {
+		try (Connection connection = configuration.connect()) {
+			return ImmutableSet.copyOf(connection.as(ReasoningConnection.class)
+			                                     .getSchemaManager()
+			                                     .getSchemas());
+		}
+	}
+
+	private static final class Key {
+
+		private final String mEndpoint;
+
+		// Not part of the identity of the key: the endpoint includes a hash of the credentials, so equal keys hold
+		// equal configurations and the configuration of whichever key is cached can fetch, and refresh, the schemas
+		private final ConnectionConfiguration mConfiguration;
+
+		private Key(String endpoint, ConnectionConfiguration configuration) {
+			mEndpoint = endpoint;
+			mConfiguration = configuration;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || (o instanceof Key && Objects.equals(mEndpoint, ((Key) o).mEndpoint));
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(mEndpoint);
+		}
+	}
+}
@@ -1,51 +1,74 @@
 package com.stardog.nifi;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import com.complexible.common.io.Files2;
 import com.complexible.stardog.api.Connection;
-import com.complexible.stardog.api.IO;
 import com.complexible.stardog.virtual.api.DataSourceOptions;
 import com.complexible.stardog.virtual.api.VirtualGraphOptions;
 import com.complexible.stardog.virtual.api.admin.VirtualGraphAdminConnection;
 import com.complexible.stardog.virtual.api.admin.VirtualGraphAdminConnection.InputFileType;
 import com.stardog.stark.IRI;
+import com.stardog.stark.Statement;
 import com.stardog.stark.Values;
 import com.stardog.stark.io.FileFormat;
 import com.stardog.stark.io.RDFFormat;
 import com.stardog.stark.io.RDFFormats;
+import com.stardog.stark.io.RDFHandler;
+import com.stardog.stark.io.RDFParser;
+import com.stardog.stark.io.RDFParsers;
 import com.stardog.stark.query.io.QueryResultFormat;
 import com.stardog.stark.query.io.QueryResultFormats;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.Stateful;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.ValidationContext;
 import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.components.Validator;
+import org.apache.nifi.components.state.Scope;
 import org.apache.nifi.expression.ExpressionLanguageScope;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.FlowFileFilter;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.ProcessorInitializationContext;
@@ -56,14 +79,47 @@ import org.apache.nifi.processor.util.StandardValidators;
 @Tags({"stardog", "put", "write", "rdf", "csv", "json"})
 @CapabilityDescription("Put data into a Stardog database. Data in RDF format is added directly whereas CSV and JSON input " +
                        "are imported into Stardog via the provided mapping file.")
+@WritesAttributes({
+        @WritesAttribute(attribute = StardogPut.BISECTION_DEPTH_ATTRIBUTE, description = "The number of times the " +
+                "batch of the FlowFile was split, after failing, before the FlowFile was committed or failed"),
+        @WritesAttribute(attribute = StardogPut.TRANSACTION_ATTEMPTS_ATTRIBUTE, description = "The number of " +
+                "transactions the FlowFile was part of, including the one that committed or failed it"),
+        @WritesAttribute(attribute = StardogPut.STATEMENTS_LOADED_ATTRIBUTE, description = "The number of statements " +
+                "that were committed, when loaded in bounded transactions"),
+        @WritesAttribute(attribute = StardogPut.COMMITS_ATTRIBUTE, description = "The number of transactions that " +
+                "were committed, when loaded in bounded transactions"),
+        @WritesAttribute(attribute = StardogPut.STATEMENTS_ADDED_ATTRIBUTE, description = "The number of statements " +
+                "that were added, when loaded as a delta"),
+        @WritesAttribute(attribute = StardogPut.STATEMENTS_REMOVED_ATTRIBUTE, description = "The number of statements " +
+                "that were removed, when loaded as a delta"),
+        @WritesAttribute(attribute = StardogPut.CHUNKS_TOTAL_ATTRIBUTE, description = "The number of chunks the " +
+                "FlowFile was split into, when loaded in parallel chunks"),
+        @WritesAttribute(attribute = StardogPut.CHUNKS_COMMITTED_ATTRIBUTE, description = "The number of chunks that " +
+                "were committed"),
+        @WritesAttribute(attribute = StardogPut.CHUNKS_FAILED_ATTRIBUTE, description = "The byte ranges, as " +
+                "start-end, of the chunks that failed to load"),
+        @WritesAttribute(attribute = StardogPut.COMMITTED_OFFSET_ATTRIBUTE, description = "The offset up to which " +
+                "all the content of the FlowFile was committed")
+})
+@Stateful(scopes = Scope.LOCAL, description = "Records how far the load of a FlowFile got, when loaded in parallel " +
+        "chunks or bounded transactions, so a FlowFile that failed part of the way through resumes where it stopped " +
+        "when it is retried.")
 @EventDriven
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
 public class StardogPut extends AbstractStardogProcessor {
+    /**
+     * Newline-delimited JSON, or JSON Lines: one JSON document per line
+     */
+    static final String INPUT_FORMAT_NDJSON = "NDJSON";
+
+    private static final Set<String> NDJSON_SUFFIXES = ImmutableSet.of(".ndjson", ".jsonl");
+
     // Impl note: We are cheating here by using QueryResultFormats constants for CSV and JSON input
     private static final Map<String, FileFormat> INPUT_FORMATS =
             ImmutableMap.<String,  FileFormat>builder()
                     .put("CSV", QueryResultFormats.CSV)
                     .put("JSON", QueryResultFormats.JSON)
+                    .put(INPUT_FORMAT_NDJSON, QueryResultFormats.JSON)
                     .put("JSON-LD", RDFFormats.JSONLD)
                     .put("RDF/XML", RDFFormats.RDFXML)
                     .put("Turtle", RDFFormats.TURTLE)
@@ -72,6 +128,8 @@ public class StardogPut extends AbstractStardogProcessor {
                     .put("N-Quads", RDFFormats.NQUADS)
                     .build();
 
+    private static final Set<RDFFormat> QUAD_FORMATS = ImmutableSet.of(RDFFormats.NQUADS, RDFFormats.TRIG, RDFFormats.JSONLD);
+
     public static final Validator CHARACTER_VALIDATOR = new Validator() {
         private final Validator stringLengthValidator = new StandardValidators.StringLengthValidator(1, 1);
 
@@ -114,7 +172,11 @@ public class StardogPut extends AbstractStardogProcessor {
                                  "with a provided mappings file. Other formats are RDF formats that can be loaded directly " +
                                  "without mappings. Note that JSON-LD is a special kind of JSON format for representing RDF " +
                                  "data. If this parameter is not specified the input format will be automatically determined " +
-                                 "from the input file mime type.")
+                                 "from the input file mime type. " + INPUT_FORMAT_NDJSON + " input, one JSON " +
+                                 "document per line, is mapped with the JSON mappings and imported in chunks of " +
+                                 "whole lines, each as a JSON array of the documents of its lines, so it is never " +
+                                 "held in memory as a whole; it is detected from the " +
+                                 String.join(" and ", NDJSON_SUFFIXES) + " filename suffixes.")
                     .required(false)
                     .allowableValues(INPUT_FORMATS.keySet())
                     .build();
@@ -130,12 +192,48 @@ public class StardogPut extends AbstractStardogProcessor {
                     .addValidator(IRI_VALIDATOR)
                     .build();
 
+    static final String STAGING_GRAPH_PREFIX = "urn:nifi:stardog:staging:";
+
+    /**
+     * The graph in which Stardog keeps the named graph aliases of a database with the graph.aliases option enabled
+     */
+    static final IRI GRAPH_ALIASES = Values.iri("tag:stardog:api:graph:aliases");
+
+    /**
+     * Links an alias to the named graph it stands for in {@link #GRAPH_ALIASES}
+     */
+    static final IRI GRAPH_ALIAS = Values.iri("tag:stardog:api:graph:alias");
+
     public static final PropertyDescriptor CLEAR_TARGET_GRAPH =
             new PropertyDescriptor.Builder()
                     .name("Clear Target Graph")
-                    .description("Clear the target graph before putting the data. Clear operation will be done in the same " +
-                                 "transaction that inserts the data for RDF inputs. If the input is being mapped from CSV or " +
-                                 "JSON then clear operation will be a separate transaction.")
+                    .description("Clear the target graph before putting the data. When the Load Mode is Atomic, clear " +
+                                 "operation will be done in the same transaction that inserts the data for RDF inputs. If " +
+                                 "the input is being mapped from CSV or JSON then clear operation will be a separate " +
+                                 "transaction. In the Parallel Chunks and Bounded Transactions load modes, and for NDJSON " +
+                                 "input, the graph is cleared in a transaction of its own and then loaded over several " +
+                                 "commits, so readers see it empty or partially loaded in the meantime unless Replace " +
+                                 "Via Staging Graph is set.")
+                    .required(true)
+                    .defaultValue("false")
+                    .expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
+                    .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor REPLACE_VIA_STAGING_GRAPH =
+            new PropertyDescriptor.Builder()
+                    .name("Replace Via Staging Graph")
+                    .description("When the target graph is cleared, load the data into a staging graph named after " +
+                                 "the UUID of the FlowFile, under " + STAGING_GRAPH_PREFIX + ", instead, and once the " +
+                                 "load succeeded switch the target graph, which is a named graph alias, to the staging " +
+                                 "graph in a transaction that only rewrites the alias, then drop the graph it stood for " +
+                                 "before. Readers never see an empty or partially loaded target graph, a failed load " +
+                                 "leaves the target graph untouched, and the switch takes the same short time whatever " +
+                                 "the size of the data. The database must have the graph.aliases option enabled and " +
+                                 "the target graph must be a named graph, used only as an alias; it becomes one at the " +
+                                 "first load. The staging graph is dropped when the FlowFile is routed to failure or " +
+                                 "its checkpoint expires, and cleared when the FlowFile is retried unless its load " +
+                                 "resumes from a checkpoint.")
                     .required(true)
                     .defaultValue("false")
                     .expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
@@ -201,7 +299,8 @@ public class StardogPut extends AbstractStardogProcessor {
     public static final PropertyDescriptor BASE_URI =
             new PropertyDescriptor.Builder()
                     .name("Base URI")
-                    .description("The URI to use as a prefix for auto-generated CSV mappings.")
+                    .description("The URI to use as a prefix for auto-generated CSV mappings. Also used to resolve " +
+                                 "relative IRIs when RDF input is parsed by the processor.")
                     .required(false)
                     .defaultValue("http://api.stardog.com/")
                     .expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
@@ -229,14 +328,234 @@ public class StardogPut extends AbstractStardogProcessor {
                     .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
                     .build();
 
+    public static final PropertyDescriptor BATCH_SIZE =
+            new PropertyDescriptor.Builder()
+                    .name("Batch Size")
+                    .description("The maximum number of FlowFiles to put into Stardog in a single transaction. " +
+                                 "FlowFiles in RDF formats that share the same connection string, target graph and " +
+                                 "input format are added in one transaction. If the transaction fails because of the " +
+                                 "data, the batch is split in halves which are put again, until the FlowFiles that " +
+                                 "cannot be added are isolated, so only those are transferred to failure. CSV and JSON " +
+                                 "input, and FlowFiles that clear the target graph, are always put one at a time. A " +
+                                 "value of 1 disables batching.")
+                    .required(true)
+                    .defaultValue("1")
+                    .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor MAX_BATCH_BYTES =
+            new PropertyDescriptor.Builder()
+                    .name("Max Batch Data Size")
+                    .description("The maximum total size of the FlowFiles of a batch. A FlowFile larger than this " +
+                                 "is put on its own.")
+                    .required(true)
+                    .defaultValue("10 MB")
+                    .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor MAX_BATCH_WAIT =
+            new PropertyDescriptor.Builder()
+                    .name("Max Batch Wait Time")
+                    .description("How long FlowFiles may wait in the queue for a batch to fill up before a partial " +
+                                 "batch is put. While waiting the processor yields. A value of zero puts whatever " +
+                                 "is queued right away.")
+                    .required(true)
+                    .defaultValue("0 secs")
+                    .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor BATCH_DELIMITED_IMPORTS =
+            new PropertyDescriptor.Builder()
+                    .name("Batch Delimited Imports")
+                    .description("Whether CSV FlowFiles of a batch are combined into a single import. FlowFiles " +
+                                 "are combined when they use the same mappings file, properties file, CSV options " +
+                                 "and target graph and have the same header line; the header is only sent once. " +
+                                 "The combined FlowFiles succeed or fail together. JSON input and FlowFiles that " +
+                                 "clear the target graph are always imported one by one.")
+                    .required(true)
+                    .allowableValues("true", "false")
+                    .defaultValue("false")
+                    .build();
+
+    /**
+     * How many times the batch a FlowFile was part of was split before the FlowFile was committed or failed
+     */
+    static final String BISECTION_DEPTH_ATTRIBUTE = "stardog.bisection.depth";
+
+    /**
+     * How many transactions included the FlowFile, including the one that committed or failed it
+     */
+    static final String TRANSACTION_ATTEMPTS_ATTRIBUTE = "stardog.transaction.attempts";
+
+    static final String CHUNKS_TOTAL_ATTRIBUTE = "stardog.chunks.total";
+
+    static final String CHUNKS_COMMITTED_ATTRIBUTE = "stardog.chunks.committed";
+
+    /**
+     * The byte ranges of the chunks that failed
+     */
+    static final String CHUNKS_FAILED_ATTRIBUTE = "stardog.chunks.failed";
+
+    /**
+     * The offset up to which all the content was committed
+     */
+    static final String COMMITTED_OFFSET_ATTRIBUTE = "stardog.committed.offset";
+
+    static final String LOAD_MODE_ATOMIC = "Atomic";
+
+    static final String LOAD_MODE_PARALLEL_CHUNKS = "Parallel Chunks";
+
+    static final String LOAD_MODE_BOUNDED_TRANSACTIONS = "Bounded Transactions";
+
+    static final String LOAD_MODE_DELTA = "Delta";
+
+    static final String STATEMENTS_ADDED_ATTRIBUTE = "stardog.statements.added";
+
+    static final String STATEMENTS_REMOVED_ATTRIBUTE = "stardog.statements.removed";
+
+    private static final String STATEMENTS_PER_COMMIT_NAME = "Statements Per Commit";
+
+    static final String STATEMENTS_LOADED_ATTRIBUTE = "stardog.statements.loaded";
+
+    static final String COMMITS_ATTRIBUTE = "stardog.commits";
+
+    public static final PropertyDescriptor LOAD_MODE =
+            new PropertyDescriptor.Builder()
+                    .name("Load Mode")
+                    .description("How the input of a FlowFile is split into transactions.")
+                    .required(true)
+                    .allowableValues(new AllowableValue(LOAD_MODE_ATOMIC, LOAD_MODE_ATOMIC,
+                                                        "Adds each FlowFile in a single transaction."),
+                                     new AllowableValue(LOAD_MODE_PARALLEL_CHUNKS, LOAD_MODE_PARALLEL_CHUNKS,
+                                                        "Splits N-Triples and N-Quads input on line boundaries " +
+                                                        "and adds the chunks concurrently, each in its own " +
+                                                        "transaction, so a failed FlowFile may be partially " +
+                                                        "loaded; the " + CHUNKS_COMMITTED_ATTRIBUTE + " and " +
+                                                        CHUNKS_FAILED_ATTRIBUTE + " attributes identify what was " +
+                                                        "loaded. Blank node labels are scoped to a chunk unless " +
+                                                        "the database preserves blank node identifiers. CSV input " +
+                                                        "is split on record boundaries, taking quoted values into " +
+                                                        "account, and each chunk is imported with the header of " +
+                                                        "the file, when " + MAPPINGS_FILE.getDisplayName() + " is " +
+                                                        "not set and " + UNIQUE_KEY_SETS.getDisplayName() + " is, " +
+                                                        "since the subjects then do not depend on the position of " +
+                                                        "a row. Other formats are loaded atomically."),
+                                     new AllowableValue(LOAD_MODE_BOUNDED_TRANSACTIONS, LOAD_MODE_BOUNDED_TRANSACTIONS,
+                                                        "Parses RDF input in the processor and commits every " +
+                                                        STATEMENTS_PER_COMMIT_NAME + " statements, so neither side " +
+                                                        "holds more than that many statements in memory; a failed " +
+                                                        "FlowFile may be partially loaded and the " +
+                                                        STATEMENTS_LOADED_ATTRIBUTE + " attribute tells how many " +
+                                                        "statements were committed. Blank nodes are scoped to a " +
+                                                        "transaction unless the database preserves blank node " +
+                                                        "identifiers, and a FlowFile that failed after a statement " +
+                                                        "with a blank node was committed is loaded from the start " +
+                                                        "when retried, rather than resumed, since blank node labels " +
+                                                        "change every time the input is parsed. CSV and JSON input " +
+                                                        "is imported atomically."),
+                                     new AllowableValue(LOAD_MODE_DELTA, LOAD_MODE_DELTA,
+                                                        "Treats RDF input as the new content of the target graph: " +
+                                                        "compares it with the statements in the graph, sorting " +
+                                                        "both sides on disk, and only removes the statements that " +
+                                                        "are gone and adds the new ones, in a single transaction " +
+                                                        "that also reads the statements of the graph; " +
+                                                        "the " + STATEMENTS_ADDED_ATTRIBUTE + " and " +
+                                                        STATEMENTS_REMOVED_ATTRIBUTE + " attributes tell how many. " +
+                                                        "Neither side may contain blank nodes."))
+                    .defaultValue(LOAD_MODE_ATOMIC)
+                    .build();
+
+    public static final PropertyDescriptor CHUNK_SIZE =
+            new PropertyDescriptor.Builder()
+                    .name("Chunk Size")
+                    .description("The approximate size of the chunks when " + LOAD_MODE.getDisplayName() + " is " +
+                                 LOAD_MODE_PARALLEL_CHUNKS + " or the input is " + INPUT_FORMAT_NDJSON + ". Chunks " +
+                                 "are extended to the end of their last line, or CSV record.")
+                    .required(true)
+                    .defaultValue("16 MB")
+                    .addValidator(StandardValidators.createDataSizeBoundsValidator(1024 * 1024, Integer.MAX_VALUE / 2))
+                    .build();
+
+    public static final PropertyDescriptor CONCURRENT_CHUNKS =
+            new PropertyDescriptor.Builder()
+                    .name("Concurrent Chunks")
+                    .description("The maximum number of chunks of a FlowFile that are added at the same time, each " +
+                                 "over its own connection, when " + LOAD_MODE.getDisplayName() + " is " +
+                                 LOAD_MODE_PARALLEL_CHUNKS + " or the input is " + INPUT_FORMAT_NDJSON + ". At most this many chunks, plus the one being read, " +
+                                 "are held in memory.")
+                    .required(true)
+                    .defaultValue("4")
+                    .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor STATEMENTS_PER_COMMIT =
+            new PropertyDescriptor.Builder()
+                    .name(STATEMENTS_PER_COMMIT_NAME)
+                    .description("The number of statements added in each transaction when " +
+                                 LOAD_MODE.getDisplayName() + " is " + LOAD_MODE_BOUNDED_TRANSACTIONS + ".")
+                    .required(true)
+                    .defaultValue("100000")
+                    .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+                    .build();
+
+    public static final PropertyDescriptor DELTA_SORT_BUFFER =
+            new PropertyDescriptor.Builder()
+                    .name("Delta Sort Buffer")
+                    .description("The number of statements of the input, and of the target graph, that are sorted " +
+                                 "in memory before they are written to a temporary file when " +
+                                 LOAD_MODE.getDisplayName() + " is " + LOAD_MODE_DELTA + ".")
+                    .required(true)
+                    .defaultValue("100000")
+                    .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+                    .build();
+
+    static final String COMPRESSION_AUTO_DETECT = "Auto Detect";
+
+    public static final PropertyDescriptor COMPRESSION =
+            new PropertyDescriptor.Builder()
+                    .name("Compression")
+                    .description("The compression of the content of the FlowFile, which is decompressed while it " +
+                                 "is sent to Stardog. " + COMPRESSION_AUTO_DETECT + " tells the compression from the " +
+                                 "suffix of the filename attribute, then from the mime.type attribute and finally " +
+                                 "from the first bytes of the content. The compression suffix is ignored when the " +
+                                 "input format is determined from the filename, so data.nt.gz is read as N-Triples.")
+                    .required(true)
+                    .allowableValues(ImmutableList.<String>builder()
+                                                  .add(COMPRESSION_AUTO_DETECT)
+                                                  .addAll(Lists.transform(Arrays.asList(Compression.values()),
+                                                                          Compression::getDisplayName))
+                                                  .build()
+                                                  .toArray(new String[0]))
+                    .defaultValue(COMPRESSION_AUTO_DETECT)
+                    .build();
+
+    public static final PropertyDescriptor CHECKPOINT_RETENTION =
+            new PropertyDescriptor.Builder()
+                    .name("Checkpoint Retention")
+                    .description("How long to keep the position a FlowFile loaded in parallel chunks or bounded " +
+                                 "transactions got to after it failed. A FlowFile with the same UUID, size and " +
+                                 "content, as identified by a hash of its first 64 KB, that is retried within this " +
+                                 "period resumes from that position, skipping the data that was already committed, " +
+                                 "and the target graph is not cleared again.")
+                    .required(true)
+                    .defaultValue("24 hours")
+                    .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+                    .build();
+
+    static final String BISECTIONS_COUNTER = "Batch Bisections";
+
+    static final String ISOLATED_COUNTER = "FlowFiles Isolated by Bisection";
+
     private static final List<PropertyDescriptor> PROPERTIES =
             ImmutableList.<PropertyDescriptor>builder()
                     .addAll(DEFAULT_PROPERTIES)
                     .add(INPUT_FORMAT)
+                    .add(COMPRESSION)
                     .add(MAPPINGS_FILE)
                     .add(PROPERTIES_FILE)
                     .add(TARGET_GRAPH)
                     .add(CLEAR_TARGET_GRAPH)
+                    .add(REPLACE_VIA_STAGING_GRAPH)
                     .add(CSV_SEPARATOR)
                     .add(CSV_QUOTE)
                     .add(CSV_ESCAPE)
@@ -245,12 +564,44 @@ public class StardogPut extends AbstractStardogProcessor {
                     .add(CSV_CLASS)
                     .add(BASE_URI)
                     .add(UNIQUE_KEY_SETS)
+                    .add(BATCH_SIZE)
+                    .add(MAX_BATCH_BYTES)
+                    .add(MAX_BATCH_WAIT)
+                    .add(BATCH_DELIMITED_IMPORTS)
+                    .add(LOAD_MODE)
+                    .add(CHUNK_SIZE)
+                    .add(CONCURRENT_CHUNKS)
+                    .add(STATEMENTS_PER_COMMIT)
+                    .add(DELTA_SORT_BUFFER)
+                    .add(CHECKPOINT_RETENTION)
                     .build();
 
+    private volatile Checkpoints mCheckpoints;
+
+    private final ImportConfigurationCache mImportConfigurations = new ImportConfigurationCache();
+
     @Override
     protected void init(ProcessorInitializationContext context) {
     }
 
+    @Override
+    protected void initialize(ProcessContext context) {
+        mCheckpoints = new Checkpoints(context.getStateManager(),
+                                       context.getProperty(CHECKPOINT_RETENTION).asTimePeriod(TimeUnit.MILLISECONDS),
+                                       getLogger());
+    }
+
+    /**
+     * Resolves the target graph when it does not depend on FlowFile attributes
+     */
+    @Override
+    protected void warmUp(ProcessContext context, Connection connection) {
+        PropertyValue targetGraph = context.getProperty(TARGET_GRAPH);
+        if (targetGraph.isSet() && !targetGraph.isExpressionLanguagePresent()) {
+            toIRI(context, null, targetGraph.getValue(), connection, Values.DEFAULT_GRAPH);
+        }
+    }
+
     @Override
     public Set<Relationship> getRelationships() {
         return DEFAULT_RELATIONSHIPS;
@@ -265,13 +616,13 @@ public class StardogPut extends AbstractStardogProcessor {
     protected void customValidate(ValidationContext validationContext, Set<ValidationResult> results) {
         PropertyValue inputFormatProperty = validationContext.getProperty(INPUT_FORMAT);
         if (inputFormatProperty.isSet() && !validationContext.getProperty(MAPPINGS_FILE).isSet()) {
-            if ("JSON".equals(inputFormatProperty.getValue())) {
+            if ("JSON".equals(inputFormatProperty.getValue()) || INPUT_FORMAT_NDJSON.equals(inputFormatProperty.getValue())) {
                 results.add(new ValidationResult.Builder().valid(false)
                                                           .subject(MAPPINGS_FILE.getDisplayName())
                                                           .explanation(MAPPINGS_FILE.getDisplayName() +
                                                                        " must be set when " +
                                                                        INPUT_FORMAT.getDisplayName() +
-                                                                       " is JSON")
+                                                                       " is " + inputFormatProperty.getValue())
                                                           .build());
             }
             else if ("CSV".equals(inputFormatProperty.getValue())) {
@@ -288,159 +639,1139 @@ public class StardogPut extends AbstractStardogProcessor {
                 }
             }
         }
+
+        if (LOAD_MODE_DELTA.equals(validationContext.getProperty(LOAD_MODE).getValue())) {
+            validateDelta(validationContext, results);
+        }
+        else if (isLiteralTrue(validationContext.getProperty(CLEAR_TARGET_GRAPH))
+                 && isLiteralTrue(validationContext.getProperty(REPLACE_VIA_STAGING_GRAPH))
+                 && !validationContext.getProperty(TARGET_GRAPH).isSet()) {
+            results.add(new ValidationResult.Builder().valid(false)
+                                                      .subject(TARGET_GRAPH.getDisplayName())
+                                                      .explanation(TARGET_GRAPH.getDisplayName() + " must be set when " +
+                                                                   REPLACE_VIA_STAGING_GRAPH.getDisplayName() +
+                                                                   " is true since the default graph cannot be an alias")
+                                                      .build());
+        }
+    }
+
+    private static boolean isLiteralTrue(PropertyValue value) {
+        return !value.isExpressionLanguagePresent() && Boolean.parseBoolean(value.getValue());
+    }
+
+    /**
+     * A delta is computed between RDF statements and already replaces the content of the target graph, so it cannot
+     * be combined with mapped input or with clearing the target graph
+     */
+    private static void validateDelta(ValidationContext validationContext, Set<ValidationResult> results) {
+        String inputFormat = validationContext.getProperty(INPUT_FORMAT).getValue();
+        if (inputFormat != null && !(INPUT_FORMATS.get(inputFormat) instanceof RDFFormat)) {
+            results.add(new ValidationResult.Builder().valid(false)
+                                                      .subject(INPUT_FORMAT.getDisplayName())
+                                                      .explanation(INPUT_FORMAT.getDisplayName() + " cannot be " +
+                                                                   inputFormat + " when " + LOAD_MODE.getDisplayName() +
+                                                                   " is " + LOAD_MODE_DELTA)
+                                                      .build());
+        }
+        for (PropertyDescriptor descriptor : Arrays.asList(CLEAR_TARGET_GRAPH, REPLACE_VIA_STAGING_GRAPH)) {
+            if (isLiteralTrue(validationContext.getProperty(descriptor))) {
+                results.add(new ValidationResult.Builder().valid(false)
+                                                          .subject(descriptor.getDisplayName())
+                                                          .explanation(descriptor.getDisplayName() + " cannot be " +
+                                                                       "true when " + LOAD_MODE.getDisplayName() +
+                                                                       " is " + LOAD_MODE_DELTA)
+                                                          .build());
+            }
+        }
     }
 
     @Override
     public void onTrigger(ProcessContext context, ProcessSession session) throws ProcessException {
-        FlowFile inputFile = session.get();
-        if (inputFile == null) {
+        if (!isServerAvailable(context)) {
             return;
         }
 
-        Stopwatch stopwatch = Stopwatch.createStarted();
+        List<FlowFile> inputFiles = getBatch(context, session);
+        if (inputFiles.isEmpty()) {
+            return;
+        }
+        if (inputFiles.size() == 1) {
+            put(context, session, inputFiles.get(0));
+            return;
+        }
 
-        ComponentLog logger = getLogger();
+        Map<BatchKey, List<FlowFile>> batches = Maps.newLinkedHashMap();
+        for (FlowFile inputFile : inputFiles) {
+            BatchKey key = getBatchKey(context, inputFile);
+            if (key == null) {
+                put(context, session, inputFile);
+            }
+            else {
+                batches.computeIfAbsent(key, k -> Lists.newArrayList()).add(inputFile);
+            }
+        }
 
-        try (Connection connection = connect(context, inputFile);
-             InputStream in = session.read(inputFile)) {
+        batches.forEach((key, batch) -> {
+            if (batch.size() == 1) {
+                put(context, session, batch.get(0));
+            }
+            else if (key.mFormat instanceof RDFFormat) {
+                putBatch(context, session, key, batch);
+            }
+            else {
+                putDelimitedBatch(context, session, key, batch);
+            }
+        });
+    }
 
-            IRI targetGraph =  toIRI(context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
-            boolean clearTargetGraph =  context.getProperty(CLEAR_TARGET_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean();
+    /**
+     * Takes up to {@link #BATCH_SIZE} FlowFiles, and at most {@link #MAX_BATCH_BYTES} of them, from the queue. Returns
+     * no FlowFiles if the batch is not full and its oldest FlowFile has not waited for {@link #MAX_BATCH_WAIT} yet.
+     */
+    private List<FlowFile> getBatch(ProcessContext context, ProcessSession session) {
+        int batchSize = context.getProperty(BATCH_SIZE).asInteger();
+        if (batchSize == 1) {
+            FlowFile inputFile = session.get();
+            return inputFile == null ? Collections.emptyList() : Collections.singletonList(inputFile);
+        }
 
-            String selectedFormat = context.getProperty(INPUT_FORMAT).getValue();
+        BatchFilter filter = new BatchFilter(batchSize, context.getProperty(MAX_BATCH_BYTES).asDataSize(DataUnit.B).longValue());
+        List<FlowFile> batch = session.get(filter);
+        if (batch.isEmpty() || filter.isFull()) {
+            return batch;
+        }
 
-            FileFormat inputFormat;
-            if (selectedFormat == null) {
-                String filename = inputFile.getAttribute("filename");
-                if (filename == null) {
-                    throw new ProcessException("Unable to determine " + INPUT_FORMAT.getDisplayName() +
-                                               " because flow file does not have filename attribute set");
-                }
-                else {
-                    Optional<RDFFormat> rdfFormat = RDFFormats.forFile(filename);
-                    if (rdfFormat.isPresent() && !rdfFormat.get().name().isEmpty()) {
-                        inputFormat = rdfFormat.get();
-                    }
-                    else if (filename.toLowerCase().endsWith("json")) {
-                        inputFormat = QueryResultFormats.JSON;
-                    }
-                    else {
-                        inputFormat = QueryResultFormats.CSV;
+        long maxWait = context.getProperty(MAX_BATCH_WAIT).asTimePeriod(TimeUnit.MILLISECONDS);
+        long oldest = batch.stream().mapToLong(FlowFile::getLastQueueDate).min().getAsLong();
+        if (System.currentTimeMillis() - oldest < maxWait) {
+            session.rollback();
+            context.yield();
+            return Collections.emptyList();
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the key of the FlowFiles that can be added in the same transaction or import as the given one, or
+     * {@code null} if the FlowFile must be put on its own.
+     */
+    private BatchKey getBatchKey(ProcessContext context, FlowFile inputFile) {
+        FileFormat inputFormat;
+        try {
+            inputFormat = getInputFormat(context, inputFile);
+        }
+        catch (ProcessException e) {
+            // Reported when the FlowFile is put on its own
+            return null;
+        }
+        if (context.getProperty(CLEAR_TARGET_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean()) {
+            return null;
+        }
+
+        String connectionURL = context.getProperty(SERVER).evaluateAttributeExpressions(inputFile).getValue();
+        String targetGraph = context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue();
+        if (inputFormat instanceof RDFFormat) {
+            return LOAD_MODE_ATOMIC.equals(context.getProperty(LOAD_MODE).getValue())
+                   ? new BatchKey(connectionURL, targetGraph, inputFormat, null, null, null)
+                   : null;
+        }
+        if (inputFormat.equals(QueryResultFormats.CSV) && context.getProperty(BATCH_DELIMITED_IMPORTS).asBoolean()
+            && !isChunked(context, inputFile, inputFormat)) {
+            return new BatchKey(connectionURL, targetGraph, inputFormat,
+                                context.getProperty(MAPPINGS_FILE).evaluateAttributeExpressions(inputFile).getValue(),
+                                context.getProperty(PROPERTIES_FILE).evaluateAttributeExpressions(inputFile).getValue(),
+                                getProcessorOptions(context, inputFile));
+        }
+        return null;
+    }
+
+    /**
+     * Adds the FlowFiles of a batch in a single transaction and transfers them to success together. If the transaction
+     * fails because of the data, the batch is split in halves which are put again, until the FlowFiles that cannot be
+     * added are isolated. Only those are transferred to failure. Failures to connect or to resolve the target graph do
+     * not depend on the data, so they send the whole batch to failure without splitting it.
+     */
+    private void putBatch(ProcessContext context, ProcessSession session, BatchKey key, List<FlowFile> batch) {
+        putBatch(context, session, key, batch, 0);
+    }
+
+    private void putBatch(ProcessContext context, ProcessSession session, BatchKey key, List<FlowFile> batch, int depth) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        FlowFile first = batch.get(0);
+        // Whether the failure, if any, happened while the FlowFiles were added and so may be caused by one of them
+        boolean adding = false;
+        try (ConnectionLease lease = connect(context, first)) {
+            Connection connection = lease.get();
+            IRI targetGraph = toIRI(context, first, key.mTargetGraph, connection, Values.DEFAULT_GRAPH);
+
+            connection.begin();
+            adding = true;
+            try {
+                for (FlowFile inputFile : batch) {
+                    try (InputStream in = read(context, session, inputFile)) {
+                        add(context, connection, session, inputFile, in, (RDFFormat) key.mFormat, targetGraph);
                     }
                 }
+                connection.commit();
             }
-            else {
-                inputFormat = INPUT_FORMATS.get(selectedFormat);
-                if (inputFormat == null) {
-                    throw new ProcessException(INPUT_FORMAT.getDisplayName() + " is not a supported value: " + selectedFormat);
+            catch (Throwable t) {
+                rollback(lease);
+                throw t;
+            }
+            adding = false;
+
+            getLogger().info("Finished ingesting {} FlowFiles into Stardog in one transaction; transferring to 'success'",
+                             new Object[] { batch.size() });
+            long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            for (FlowFile inputFile : batch) {
+                session.getProvenanceReporter()
+                       .modifyContent(inputFile, "Ingested data into Stardog in a batch of " + batch.size(), elapsed);
+                transferToSuccess(session, putBisectionAttributes(session, inputFile, depth));
+            }
+        }
+        catch (Throwable t) {
+            if (adding && batch.size() > 1 && FailureClassifier.classify(t) == FailureClassifier.Failure.PERMANENT) {
+                getLogger().info("Failed to ingest {} FlowFiles in one transaction: {}; splitting the batch",
+                                 new Object[] { batch.size(), Throwables.getRootCause(t) });
+                session.adjustCounter(BISECTIONS_COUNTER, 1, false);
+
+                int middle = batch.size() / 2;
+                putBatch(context, session, key, batch.subList(0, middle), depth + 1);
+                putBatch(context, session, key, batch.subList(middle, batch.size()), depth + 1);
+                return;
+            }
+
+            if (depth > 0 && batch.size() == 1) {
+                session.adjustCounter(ISOLATED_COUNTER, 1, false);
+            }
+            List<FlowFile> failed = Lists.newArrayListWithCapacity(batch.size());
+            batch.forEach(inputFile -> failed.add(putBisectionAttributes(session, inputFile, depth)));
+            transferToFailure(context, session, failed, t);
+        }
+    }
+
+    /**
+     * Imports the CSV FlowFiles of a batch in as few imports as possible. FlowFiles are grouped by header line, if the
+     * CSV has a header, and the FlowFiles of a group are sent as one stream that only contains the first header.
+     */
+    private void putDelimitedBatch(ProcessContext context, ProcessSession session, BatchKey key, List<FlowFile> batch) {
+        Map<String, List<FlowFile>> groups = Maps.newLinkedHashMap();
+        boolean hasHeader;
+        try {
+            hasHeader = hasHeader(context, batch.get(0));
+            for (FlowFile inputFile : batch) {
+                String header = hasHeader ? readHeader(context, session, inputFile) : "";
+                groups.computeIfAbsent(header, k -> Lists.newArrayList()).add(inputFile);
+            }
+        }
+        catch (Throwable t) {
+            transferToFailure(context, session, batch, t);
+            return;
+        }
+
+        groups.values().forEach(group -> {
+            if (group.size() == 1) {
+                put(context, session, group.get(0));
+                return;
+            }
+
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            FlowFile first = group.get(0);
+            try (ConnectionLease lease = connect(context, first);
+                 InputStream in = new ConcatenatedInputStream(context, session, group, hasHeader)) {
+                Connection connection = lease.get();
+                IRI targetGraph = toIRI(context, first, key.mTargetGraph, connection, Values.DEFAULT_GRAPH);
+                importFile(context, first, connection, targetGraph, key.mFormat, in);
+
+                getLogger().info("Finished importing {} FlowFiles into Stardog in one import; transferring to 'success'",
+                                 new Object[] { group.size() });
+                long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+                for (FlowFile inputFile : group) {
+                    session.getProvenanceReporter()
+                           .modifyContent(inputFile, "Imported data into Stardog in a batch of " + group.size(), elapsed);
+                    transferToSuccess(session, inputFile);
                 }
             }
+            catch (Throwable t) {
+                transferToFailure(context, session, group, t);
+            }
+        });
+    }
 
-            logger.info("Input format for ingestion {} ({})", inputFormat, inputFormat.getClass().getSimpleName());
+    /**
+     * Imports CSV or JSON content with the mappings and options configured for the FlowFile
+     */
+    private void importFile(ProcessContext context, FlowFile inputFile, Connection connection, IRI targetGraph,
+                            FileFormat inputFormat, InputStream in) throws IOException {
+        VirtualGraphAdminConnection vgConn = connection.admin().as(VirtualGraphAdminConnection.class);
 
-            if (inputFormat instanceof QueryResultFormat) {
-                VirtualGraphAdminConnection vgConn = connection.admin().as(VirtualGraphAdminConnection.class);
+        PropertyValue mappingsPath = context.getProperty(MAPPINGS_FILE).evaluateAttributeExpressions(inputFile);
+        String mappingString = mappingsPath.isSet()
+                               ? mImportConfigurations.getMapping(mappingsPath.getValue())
+                               : null;
+
+        InputFileType fileType = inputFormat.equals(QueryResultFormats.JSON)
+                                 ? InputFileType.JSON
+                                 : InputFileType.DELIMITED;
+
+        vgConn.importFile(mappingString, getImportOptions(context, inputFile), connection.name(), targetGraph, in, fileType);
+    }
+
+    private Properties getImportOptions(ProcessContext context, FlowFile inputFile) throws IOException {
+        PropertyValue propertiesPath = context.getProperty(PROPERTIES_FILE).evaluateAttributeExpressions(inputFile);
+        return mImportConfigurations.getOptions(getProcessorOptions(context, inputFile),
+                                                propertiesPath.isSet() ? propertiesPath.getValue() : null);
+    }
+
+    /**
+     * Returns the import options set by the properties of the processor
+     */
+    private static Properties getProcessorOptions(ProcessContext context, FlowFile inputFile) {
+        return PropertySetter.builder(context, inputFile)
+                             .setProperty(CSV_SEPARATOR, VirtualGraphOptions.CSV_SEPARATOR)
+                             .setProperty(CSV_QUOTE, VirtualGraphOptions.CSV_QUOTE)
+                             .setProperty(CSV_ESCAPE, VirtualGraphOptions.CSV_ESCAPE)
+                             .setProperty(CSV_HEADER, VirtualGraphOptions.CSV_HEADER)
+                             .setProperty(CSV_SKIP_EMPTY, VirtualGraphOptions.CSV_SKIP_EMPTY)
+                             .setProperty(BASE_URI, VirtualGraphOptions.BASE_URI)
+                             .setProperty(CSV_CLASS, VirtualGraphOptions.CSV_CLASS)
+                             .setProperty(UNIQUE_KEY_SETS, DataSourceOptions.UNIQUE_KEY_SETS)
+                             .build();
+    }
+
+    private boolean hasHeader(ProcessContext context, FlowFile inputFile) throws IOException {
+        return !"false".equalsIgnoreCase(getImportOptions(context, inputFile).getProperty(VirtualGraphOptions.CSV_HEADER));
+    }
+
+    /**
+     * Returns the first line of the FlowFile, without the line break
+     */
+    private static String readHeader(ProcessContext context, ProcessSession session, FlowFile inputFile) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (InputStream in = read(context, session, inputFile)) {
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                header.write(b);
+            }
+        }
+        return header.toString(Charsets.UTF_8.name());
+    }
+
+    private static FlowFile putBisectionAttributes(ProcessSession session, FlowFile inputFile, int depth) {
+        if (depth == 0) {
+            return inputFile;
+        }
+        return session.putAllAttributes(inputFile, ImmutableMap.of(BISECTION_DEPTH_ATTRIBUTE, String.valueOf(depth),
+                                                                   TRANSACTION_ATTEMPTS_ATTRIBUTE, String.valueOf(depth + 1)));
+    }
+
+    private void put(ProcessContext context, ProcessSession session, FlowFile inputFile) {
+        FileFormat inputFormat = getInputFormatOrNull(context, inputFile);
+        if (isChunked(context, inputFile, inputFormat)) {
+            putChunks(context, session, inputFile, inputFormat);
+            return;
+        }
+        if (isBounded(context, inputFormat)) {
+            putBounded(context, session, inputFile, (RDFFormat) inputFormat);
+            return;
+        }
+        if (isDelta(context, inputFormat)) {
+            putDelta(context, session, inputFile, (RDFFormat) inputFormat);
+            return;
+        }
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        ComponentLog logger = getLogger();
 
-                PropertyValue mappingsPath = context.getProperty(MAPPINGS_FILE).evaluateAttributeExpressions(inputFile);
-                String mappingString = mappingsPath.isSet()
-                                       ? Files2.toString(new File(mappingsPath.getValue()).toPath(), Charsets.UTF_8)
-                                       : null;
+        IRI targetGraph = null;
+        IRI loadGraph = null;
+        try (ConnectionLease lease = connect(context, inputFile);
+             InputStream in = read(context, session, inputFile)) {
+            Connection connection = lease.get();
 
+            targetGraph =  toIRI(context, inputFile, context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
+            boolean clearTargetGraph =  context.getProperty(CLEAR_TARGET_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean();
+            loadGraph = getLoadGraph(context, inputFile, targetGraph);
+
+            FileFormat inputFormat = getInputFormat(context, inputFile);
+
+            logger.info("Input format for ingestion {} ({})", inputFormat, inputFormat.getClass().getSimpleName());
+
+            if (inputFormat instanceof QueryResultFormat) {
                 if (clearTargetGraph) {
                     connection.begin();
                     try {
-                        connection.remove().context(targetGraph);
+                        connection.remove().context(loadGraph);
                         connection.commit();
                     }
                     catch (Throwable t) {
-                        connection.rollback();
+                        rollback(lease);
                         throw t;
                     }
                 }
 
-                InputFileType fileType = inputFormat.equals(QueryResultFormats.JSON)
-                                         ? InputFileType.JSON
-                                         : InputFileType.DELIMITED;
-
-                Properties properties =
-                        PropertySetter.builder(context, inputFile)
-                                      .setProperty(CSV_SEPARATOR, VirtualGraphOptions.CSV_SEPARATOR)
-                                      .setProperty(CSV_QUOTE, VirtualGraphOptions.CSV_QUOTE)
-                                      .setProperty(CSV_ESCAPE, VirtualGraphOptions.CSV_ESCAPE)
-                                      .setProperty(CSV_HEADER, VirtualGraphOptions.CSV_HEADER)
-                                      .setProperty(CSV_SKIP_EMPTY, VirtualGraphOptions.CSV_SKIP_EMPTY)
-                                      .setProperty(BASE_URI, VirtualGraphOptions.BASE_URI)
-                                      .setProperty(CSV_CLASS, VirtualGraphOptions.CSV_CLASS)
-                                      .setProperty(UNIQUE_KEY_SETS, DataSourceOptions.UNIQUE_KEY_SETS)
-                                      .build();
-
-                PropertyValue propertiesPath = context.getProperty(PROPERTIES_FILE).evaluateAttributeExpressions(inputFile);
-                if (propertiesPath.isSet()) {
-                    Properties propsFromFile = new Properties();
-                    try (InputStream is = Files.newInputStream(Paths.get(propertiesPath.getValue()))) {
-                        propsFromFile.load(is);
-                    }
-                    properties.putAll(propsFromFile);
-                }
-
-                vgConn.importFile(mappingString, properties, connection.name(), targetGraph, in, fileType);
+                importFile(context, inputFile, connection, loadGraph, inputFormat, in);
             }
             else {
                 connection.begin();
                 try {
                     if (clearTargetGraph) {
-                        connection.remove().context(targetGraph);
-                    }
-                    IO io = connection.add()
-                                      .io()
-                                      .format((RDFFormat) inputFormat)
-                                      .context(targetGraph);
-                    if (isKerberosCredentials(context)) {
-                        // HACK: Work around MainClientExec.execute requiring restartable entity with krb5 negotiation
-                        ioByTempFile(connection, in, io);
-                    }
-                    else {
-                        io.stream(in);
-                        connection.commit();
+                        connection.remove().context(loadGraph);
                     }
+                    send(context, newIO(connection, (RDFFormat) inputFormat, loadGraph), in);
+                    connection.commit();
                 }
                 catch (Throwable t) {
-                    connection.rollback();
+                    rollback(lease);
                     throw t;
                 }
             }
+            replaceWithStagingGraph(lease, loadGraph, targetGraph);
 
             logger.info("Finished ingesting data into Stardog; transferring to 'success'", new Object[] { });
             session.getProvenanceReporter()
                    .modifyContent(inputFile, "Ingested data into Stardog", stopwatch.elapsed(TimeUnit.MILLISECONDS));
-            session.transfer(inputFile, REL_SUCCESS);
+            transferToSuccess(session, inputFile);
         }
         catch (Throwable t) {
-            Throwable rootCause = Throwables.getRootCause(t);
-            context.yield();
-            logger.error("{} failed! Throwable exception {}; rolling back session", this, rootCause);
-            session.transfer(inputFile, REL_FAILURE);
+            transferStagedToFailure(context, session, inputFile, loadGraph, targetGraph, t);
         }
     }
 
-    private boolean isKerberosCredentials(ProcessContext context) {
-        return context.getProperty(KERBEROS_CREDENTIALS_SERVICE) != null;
+    private static boolean isChunked(ProcessContext context, FlowFile inputFile, FileFormat inputFormat) {
+        if (isNDJSON(context, inputFile, inputFormat)) {
+            // Each line is a document of its own, so NDJSON is always imported in chunks of bounded size
+            return true;
+        }
+        if (!LOAD_MODE_PARALLEL_CHUNKS.equals(context.getProperty(LOAD_MODE).getValue())) {
+            return false;
+        }
+        if (RDFFormats.NTRIPLES.equals(inputFormat) || RDFFormats.NQUADS.equals(inputFormat)) {
+            return true;
+        }
+        // The subjects of an auto-generated mapping with unique keys only depend on the row itself, so the statements
+        // of a row do not depend on the chunk it is imported in, whereas row numbers would restart in every chunk
+        return QueryResultFormats.CSV.equals(inputFormat)
+               && !context.getProperty(MAPPINGS_FILE).evaluateAttributeExpressions(inputFile).isSet()
+               && context.getProperty(UNIQUE_KEY_SETS).evaluateAttributeExpressions(inputFile).isSet();
     }
 
-    private void ioByTempFile(Connection connection, InputStream in, IO io) throws IOException {
-        File tempFile = File.createTempFile("StardogPut", "tmp");
-        try (OutputStream os = Files.newOutputStream(tempFile.toPath())) {
-            ByteStreams.copy(in, os);
-            os.close();
-            in.close();
-            io.file(tempFile.toPath());
-            connection.commit();
+    /**
+     * Whether the JSON input of the FlowFile is newline-delimited
+     */
+    private static boolean isNDJSON(ProcessContext context, FlowFile inputFile, FileFormat inputFormat) {
+        if (!QueryResultFormats.JSON.equals(inputFormat)) {
+            return false;
+        }
+        String selectedFormat = context.getProperty(INPUT_FORMAT).getValue();
+        if (selectedFormat != null) {
+            return INPUT_FORMAT_NDJSON.equals(selectedFormat);
+        }
+        String filename = inputFile.getAttribute(CoreAttributes.FILENAME.key());
+        return filename != null && isNDJSON(Compression.stripSuffix(filename));
+    }
+
+    private static boolean isNDJSON(String filename) {
+        String lowerCase = filename.toLowerCase();
+        return NDJSON_SUFFIXES.stream().anyMatch(lowerCase::endsWith);
+    }
+
+    private static boolean isBounded(ProcessContext context, FileFormat inputFormat) {
+        return LOAD_MODE_BOUNDED_TRANSACTIONS.equals(context.getProperty(LOAD_MODE).getValue())
+               && inputFormat instanceof RDFFormat;
+    }
+
+    private static boolean isDelta(ProcessContext context, FileFormat inputFormat) {
+        return LOAD_MODE_DELTA.equals(context.getProperty(LOAD_MODE).getValue())
+               && inputFormat instanceof RDFFormat;
+    }
+
+    /**
+     * Returns the input format of the FlowFile, or {@code null} if it cannot be determined
+     */
+    private FileFormat getInputFormatOrNull(ProcessContext context, FlowFile inputFile) {
+        try {
+            return getInputFormat(context, inputFile);
+        }
+        catch (ProcessException e) {
+            // Reported when the FlowFile is put atomically
+            return null;
+        }
+    }
+
+    /**
+     * Splits the FlowFile on record boundaries and adds the chunks concurrently, each in its own transaction or import
+     */
+    private void putChunks(ProcessContext context, ProcessSession session, FlowFile inputFile, FileFormat format) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        dropExpiredStagingGraphs(context);
+
+        ChunkedLoader.Result result = null;
+        IRI targetGraph = null;
+        IRI loadGraph = null;
+        try {
+            String fingerprint = fingerprint(session, inputFile);
+            long checkpoint = mCheckpoints.get(inputFile, fingerprint, Checkpoints.BYTE_OFFSET);
+            try (ConnectionLease lease = connect(context, inputFile)) {
+                Connection connection = lease.get();
+                targetGraph = toIRI(context, inputFile, context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
+                loadGraph = getLoadGraph(context, inputFile, targetGraph);
+                if (checkpoint == 0) {
+                    clearTargetGraph(context, inputFile, lease, loadGraph);
+                }
+                else {
+                    getLogger().info("Resuming {} from offset {}", new Object[] { inputFile, checkpoint });
+                }
+            }
+
+            int chunkSize = context.getProperty(CHUNK_SIZE).asDataSize(DataUnit.B).intValue();
+            int concurrency = context.getProperty(CONCURRENT_CHUNKS).asInteger();
+            FlowFile flowFile = inputFile;
+            IRI graph = loadGraph;
+            try (InputStream in = read(context, session, inputFile)) {
+                ChunkedLoader loader;
+                ChunkedLoader.ChunkWriter writer;
+                if (format instanceof RDFFormat) {
+                    ByteStreams.skipFully(in, checkpoint);
+                    loader = new ChunkedLoader(chunkSize, concurrency, checkpoint);
+                    writer = chunk -> addChunk(context, flowFile, chunk, (RDFFormat) format, graph);
+                }
+                else if (QueryResultFormats.JSON.equals(format)) {
+                    // The documents of a chunk of NDJSON lines are imported as the elements of a single JSON array
+                    ByteStreams.skipFully(in, checkpoint);
+                    loader = new ChunkedLoader(chunkSize, concurrency, checkpoint);
+                    writer = chunk -> importJsonChunk(context, flowFile, chunk, graph);
+                }
+                else {
+                    // Every chunk is imported with the header of the file, which is never part of a chunk
+                    ChunkedLoader.RecordBoundaries boundaries = newCsvRecordBoundaries(context, inputFile);
+                    byte[] header = hasHeader(context, inputFile)
+                                    ? ChunkedLoader.readRecord(in, boundaries)
+                                    : new byte[0];
+                    long startOffset = Math.max(checkpoint, header.length);
+                    ByteStreams.skipFully(in, startOffset - header.length);
+                    loader = new ChunkedLoader(chunkSize, concurrency, startOffset, boundaries);
+                    writer = chunk -> importChunk(context, flowFile, chunk, header, format, graph);
+                }
+                result = loader.load(in, writer, offset -> mCheckpoints.put(flowFile, fingerprint, Checkpoints.BYTE_OFFSET, offset));
+            }
+            if (result.hasFailed()) {
+                throw new ProcessException("Failed to load " + result.getFailedChunks() + " of " + inputFile,
+                                           result.getFailure());
+            }
+            try (ConnectionLease lease = connect(context, inputFile)) {
+                replaceWithStagingGraph(lease, loadGraph, targetGraph);
+            }
+
+            getLogger().info("Finished ingesting {} chunks into Stardog; transferring to 'success'",
+                             new Object[] { result.getCommittedChunks() });
+            mCheckpoints.remove(inputFile);
+            inputFile = putChunkAttributes(session, inputFile, result);
+            session.getProvenanceReporter()
+                   .modifyContent(inputFile, "Ingested data into Stardog in " + result.getCommittedChunks() + " chunks",
+                                  stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            transferToSuccess(session, inputFile);
+        }
+        catch (Throwable t) {
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (result != null) {
+                inputFile = putChunkAttributes(session, inputFile, result);
+            }
+            transferStagedToFailure(context, session, inputFile, loadGraph, targetGraph, t);
+        }
+    }
+
+    /**
+     * Parses the FlowFile and adds its statements in transactions of at most {@link #STATEMENTS_PER_COMMIT} statements
+     */
+    private void putBounded(ProcessContext context, ProcessSession session, FlowFile inputFile, RDFFormat format) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        dropExpiredStagingGraphs(context);
+
+        BatchingRDFHandler handler = null;
+        IRI targetGraph = null;
+        IRI loadGraph = null;
+        try (ConnectionLease lease = connect(context, inputFile)) {
+            Connection connection = lease.get();
+            targetGraph = toIRI(context, inputFile, context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
+            loadGraph = getLoadGraph(context, inputFile, targetGraph);
+            String fingerprint = fingerprint(session, inputFile);
+            long checkpoint = mCheckpoints.get(inputFile, fingerprint, Checkpoints.STATEMENT_INDEX);
+            if (checkpoint == 0) {
+                clearTargetGraph(context, inputFile, lease, loadGraph);
+            }
+            else {
+                getLogger().info("Resuming {} after {} statements", new Object[] { inputFile, checkpoint });
+            }
+
+            RDFFormat batchFormat = QUAD_FORMATS.contains(format) ? RDFFormats.NQUADS : RDFFormats.NTRIPLES;
+            FlowFile flowFile = inputFile;
+            IRI graph = loadGraph;
+            handler = new BatchingRDFHandler(context.getProperty(STATEMENTS_PER_COMMIT).asInteger(), checkpoint,
+                                             statements -> addStatements(context, lease, statements, batchFormat, graph),
+                                             committed -> {
+                                                 if (committed == 0) {
+                                                     // Blank nodes were committed, so a retry must start over
+                                                     mCheckpoints.remove(flowFile);
+                                                 }
+                                                 else {
+                                                     mCheckpoints.put(flowFile, fingerprint, Checkpoints.STATEMENT_INDEX, committed);
+                                                 }
+                                             });
+            try (InputStream in = read(context, session, inputFile)) {
+                handler.load(in, format, context.getProperty(BASE_URI).evaluateAttributeExpressions(inputFile).getValue());
+            }
+            replaceWithStagingGraph(lease, loadGraph, targetGraph);
+
+            getLogger().info("Finished ingesting {} statements into Stardog in {} transactions; transferring to 'success'",
+                             new Object[] { handler.getCommittedStatements(), handler.getCommits() });
+            mCheckpoints.remove(inputFile);
+        }
+        catch (Throwable t) {
+            if (handler != null) {
+                inputFile = putStatementAttributes(session, inputFile, handler);
+            }
+            transferStagedToFailure(context, session, inputFile, loadGraph, targetGraph, t);
+            return;
+        }
+
+        inputFile = putStatementAttributes(session, inputFile, handler);
+        session.getProvenanceReporter()
+               .modifyContent(inputFile, "Ingested " + handler.getCommittedStatements() + " statements into Stardog",
+                              stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        transferToSuccess(session, inputFile);
+    }
+
+    /**
+     * Makes the target graph contain the statements of the FlowFile by adding and removing only the statements that
+     * differ, in a single transaction. The statements of the target graph are read in that transaction too, so the delta
+     * is applied to the content it was computed from; a write to the graph committed by another transaction meanwhile is
+     * resolved by the write conflict strategy of the database, like any concurrent write.
+     */
+    private void putDelta(ProcessContext context, ProcessSession session, FlowFile inputFile, RDFFormat format) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        Path additions = null;
+        Path removals = null;
+        try (ConnectionLease lease = connect(context, inputFile);
+             GraphDelta delta = new GraphDelta(context.getProperty(DELTA_SORT_BUFFER).asInteger())) {
+            Connection connection = lease.get();
+            IRI targetGraph = toIRI(context, inputFile, context.getProperty(TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
+
+            RDFParser parser = RDFParsers.createParser(format)
+                                         .orElseThrow(() -> new ProcessException("No parser available for " + format));
+            try (InputStream in = read(context, session, inputFile)) {
+                parser.parse(in, context.getProperty(BASE_URI).evaluateAttributeExpressions(inputFile).getValue(),
+                             delta.snapshot());
+            }
+
+            connection.begin();
+            try {
+                RDFHandler current = delta.current();
+                current.start();
+                try (Stream<Statement> statements = connection.get().context(targetGraph).statements()) {
+                    statements.forEach(current::handle);
+                }
+                current.end();
+
+                additions = Files.createTempFile("stardog-additions-", ".nt");
+                removals = Files.createTempFile("stardog-removals-", ".nt");
+                try (OutputStream additionsOut = new BufferedOutputStream(Files.newOutputStream(additions));
+                     OutputStream removalsOut = new BufferedOutputStream(Files.newOutputStream(removals))) {
+                    delta.compute(additionsOut, removalsOut);
+                }
+
+                // Sent as files, which the client can send again when Kerberos negotiation challenges the request
+                if (delta.getRemoved() > 0) {
+                    // Removed first, so a statement that only differs by the form of a literal is added back
+                    connection.remove().io().format(RDFFormats.NTRIPLES).context(targetGraph).file(removals);
+                }
+                if (delta.getAdded() > 0) {
+                    newIO(connection, RDFFormats.NTRIPLES, targetGraph).file(additions);
+                }
+                connection.commit();
+            }
+            catch (Throwable t) {
+                rollback(lease);
+                throw t;
+            }
+
+            getLogger().info("Finished ingesting a delta of {} added and {} removed statements into Stardog; transferring to 'success'",
+                             new Object[] { delta.getAdded(), delta.getRemoved() });
+            inputFile = session.putAllAttributes(inputFile, ImmutableMap.of(STATEMENTS_ADDED_ATTRIBUTE, String.valueOf(delta.getAdded()),
+                                                                            STATEMENTS_REMOVED_ATTRIBUTE, String.valueOf(delta.getRemoved())));
+            session.getProvenanceReporter()
+                   .modifyContent(inputFile, "Added " + delta.getAdded() + " and removed " + delta.getRemoved() +
+                                             " statements in Stardog", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            transferToSuccess(session, inputFile);
+        }
+        catch (Throwable t) {
+            transferToFailure(context, session, inputFile, t);
         }
         finally {
-            if (!tempFile.delete()) {
-                tempFile.deleteOnExit();
+            deleteQuietly(additions);
+            deleteQuietly(removals);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            getLogger().warn("Failed to delete temporary file {}", new Object[] { path }, e);
+        }
+    }
+
+    private static FlowFile putStatementAttributes(ProcessSession session, FlowFile inputFile, BatchingRDFHandler handler) {
+        return session.putAllAttributes(inputFile, ImmutableMap.of(STATEMENTS_LOADED_ATTRIBUTE, String.valueOf(handler.getCommittedStatements()),
+                                                                   COMMITS_ATTRIBUTE, String.valueOf(handler.getCommits())));
+    }
+
+    /**
+     * Clears the target graph in a transaction of its own if {@link #CLEAR_TARGET_GRAPH} is set
+     */
+    private void clearTargetGraph(ProcessContext context, FlowFile inputFile, ConnectionLease lease, IRI targetGraph) {
+        if (!context.getProperty(CLEAR_TARGET_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean()) {
+            return;
+        }
+
+        Connection connection = lease.get();
+        connection.begin();
+        try {
+            connection.remove().context(targetGraph);
+            connection.commit();
+        }
+        catch (RuntimeException e) {
+            rollback(lease);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the graph the data of the FlowFile is loaded into: the target graph, or the staging graph of the FlowFile
+     * if the target graph is replaced via a staging graph
+     */
+    private static IRI getLoadGraph(ProcessContext context, FlowFile inputFile, IRI targetGraph) {
+        if (!context.getProperty(CLEAR_TARGET_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean()
+            || !context.getProperty(REPLACE_VIA_STAGING_GRAPH).evaluateAttributeExpressions(inputFile).asBoolean()) {
+            return targetGraph;
+        }
+        if (Values.DEFAULT_GRAPH.equals(targetGraph)) {
+            throw new ProcessException("The default graph cannot be replaced via a staging graph since it cannot be an alias");
+        }
+        return getStagingGraph(inputFile.getAttribute(CoreAttributes.UUID.key()));
+    }
+
+    /**
+     * Named after the FlowFile so a retried FlowFile finds the data it already loaded
+     */
+    private static IRI getStagingGraph(String uuid) {
+        return Values.iri(STAGING_GRAPH_PREFIX + uuid);
+    }
+
+    /**
+     * Routes the FlowFile to failure, or retry, and drops its staging graph if it is routed to failure since the data
+     * loaded so far will not be resumed from
+     */
+    private void transferStagedToFailure(ProcessContext context, ProcessSession session, FlowFile inputFile,
+                                         IRI loadGraph, IRI targetGraph, Throwable t) {
+        if (loadGraph != null && !loadGraph.equals(targetGraph)
+            && FailureClassifier.classify(t) == FailureClassifier.Failure.PERMANENT) {
+            mCheckpoints.remove(inputFile);
+            try (ConnectionLease lease = connect(context, inputFile)) {
+                lease.get().update("DROP SILENT GRAPH <" + loadGraph + ">").execute();
+            }
+            catch (RuntimeException e) {
+                getLogger().warn("Failed to drop the staging graph {} of {}", new Object[] { loadGraph, inputFile }, e);
             }
         }
+        transferToFailure(context, session, inputFile, t);
+    }
+
+    /**
+     * Drops the staging graphs of the FlowFiles whose checkpoints expired, which are not going to be resumed from. The
+     * staging graphs are looked for in the database the processor connects to without FlowFile attributes.
+     */
+    private void dropExpiredStagingGraphs(ProcessContext context) {
+        Set<String> expired = mCheckpoints.removeExpired();
+        if (expired.isEmpty()) {
+            return;
+        }
+        if (context.getProperty(SERVER).isExpressionLanguagePresent()) {
+            getLogger().warn("Cannot drop the staging graphs of the FlowFiles whose checkpoints expired because {} " +
+                             "depends on FlowFile attributes; drop the graphs {} manually if they exist",
+                             new Object[] { SERVER.getDisplayName(), expired.stream()
+                                                                             .map(StardogPut::getStagingGraph)
+                                                                             .collect(Collectors.toList()) });
+            return;
+        }
+
+        String update = expired.stream()
+                               .map(uuid -> "DROP SILENT GRAPH <" + getStagingGraph(uuid) + ">")
+                               .collect(Collectors.joining(";\n"));
+        try (ConnectionLease lease = connect(context, null)) {
+            lease.get().update(update).execute();
+        }
+        catch (RuntimeException e) {
+            getLogger().warn("Failed to drop the staging graphs of the FlowFiles {} whose checkpoints expired",
+                             new Object[] { expired }, e);
+        }
+    }
+
+    /**
+     * Switches the target graph, a named graph alias, to the staging graph unless the data was loaded into the target
+     * graph itself. The transaction only rewrites the alias, so it is as short whatever the size of the data and readers
+     * see either the old or the new content. The graphs the alias stood for are dropped after the switch, so a failure
+     * to drop them leaves the new content in place.
+     */
+    private void replaceWithStagingGraph(ConnectionLease lease, IRI loadGraph, IRI targetGraph) {
+        if (loadGraph.equals(targetGraph)) {
+            return;
+        }
+
+        Connection connection = lease.get();
+        List<Statement> previous;
+        connection.begin();
+        try {
+            try (Stream<Statement> aliases = connection.get()
+                                                       .context(GRAPH_ALIASES)
+                                                       .subject(targetGraph)
+                                                       .predicate(GRAPH_ALIAS)
+                                                       .statements()) {
+                previous = aliases.collect(Collectors.toList());
+            }
+            for (Statement alias : previous) {
+                connection.remove().statement(alias);
+            }
+            connection.add().statement(Values.statement(targetGraph, GRAPH_ALIAS, loadGraph, GRAPH_ALIASES));
+            connection.commit();
+        }
+        catch (Throwable t) {
+            rollback(lease);
+            throw t;
+        }
+        getLogger().debug("Switched the alias {} to {}", new Object[] { targetGraph, loadGraph });
+
+        for (Statement alias : previous) {
+            if (loadGraph.equals(alias.object()) || !(alias.object() instanceof IRI)) {
+                continue;
+            }
+            try {
+                connection.update("DROP SILENT GRAPH <" + alias.object() + ">").execute();
+            }
+            catch (RuntimeException e) {
+                getLogger().warn("Failed to drop the graph {} that {} stood for before it was switched to {}",
+                                 new Object[] { alias.object(), targetGraph, loadGraph }, e);
+            }
+        }
+    }
+
+    private void addChunk(ProcessContext context, FlowFile inputFile, ChunkedLoader.Chunk chunk, RDFFormat format,
+                          IRI targetGraph) throws IOException {
+        try (ConnectionLease lease = connect(context, inputFile)) {
+            Connection connection = lease.get();
+            connection.begin();
+            try {
+                try (InputStream in = chunk.open()) {
+                    send(context, newIO(connection, format, targetGraph), in);
+                }
+                connection.commit();
+            }
+            catch (Throwable t) {
+                rollback(lease);
+                throw t;
+            }
+        }
+        getLogger().debug("Committed {} of {}", new Object[] { chunk, inputFile });
+    }
+
+    /**
+     * Imports a chunk of CSV content, preceded by the header of the content if it has one
+     */
+    private void importChunk(ProcessContext context, FlowFile inputFile, ChunkedLoader.Chunk chunk, byte[] header,
+                             FileFormat format, IRI targetGraph) throws IOException {
+        try (ConnectionLease lease = connect(context, inputFile);
+             InputStream in = new SequenceInputStream(new ByteArrayInputStream(header), chunk.open())) {
+            importFile(context, inputFile, lease.get(), targetGraph, format, in);
+        }
+        getLogger().debug("Imported {} of {}", new Object[] { chunk, inputFile });
+    }
+
+    /**
+     * Imports a chunk of NDJSON content as a JSON array of the documents on its lines
+     */
+    private void importJsonChunk(ProcessContext context, FlowFile inputFile, ChunkedLoader.Chunk chunk, IRI targetGraph)
+            throws IOException {
+        try (ConnectionLease lease = connect(context, inputFile);
+             InputStream in = chunk.openAsJsonArray()) {
+            importFile(context, inputFile, lease.get(), targetGraph, QueryResultFormats.JSON, in);
+        }
+        getLogger().debug("Imported {} of {}", new Object[] { chunk, inputFile });
+    }
+
+    /**
+     * Returns the record boundaries of CSV content with the quote and escape characters of the import options
+     */
+    private ChunkedLoader.RecordBoundaries newCsvRecordBoundaries(ProcessContext context, FlowFile inputFile)
+            throws IOException {
+        Properties options = getImportOptions(context, inputFile);
+        String quote = Strings.emptyToNull(options.getProperty(VirtualGraphOptions.CSV_QUOTE));
+        String escape = Strings.emptyToNull(options.getProperty(VirtualGraphOptions.CSV_ESCAPE));
+        char quoteChar = quote == null ? '"' : quote.charAt(0);
+        return new ChunkedLoader.CsvRecordBoundaries(quoteChar, escape == null ? quoteChar : escape.charAt(0));
+    }
+
+    private static FlowFile putChunkAttributes(ProcessSession session, FlowFile inputFile, ChunkedLoader.Result result) {
+        Map<String, String> attributes = Maps.newHashMap();
+        attributes.put(CHUNKS_TOTAL_ATTRIBUTE, String.valueOf(result.getSubmittedChunks()));
+        attributes.put(CHUNKS_COMMITTED_ATTRIBUTE, String.valueOf(result.getCommittedChunks()));
+        attributes.put(COMMITTED_OFFSET_ATTRIBUTE, String.valueOf(result.getCommittedOffset()));
+        if (result.hasFailed()) {
+            attributes.put(CHUNKS_FAILED_ATTRIBUTE, result.getFailedChunks()
+                                                          .stream()
+                                                          .map(chunk -> chunk.getOffset() + "-" + chunk.getEnd())
+                                                          .collect(Collectors.joining(",")));
+        }
+        return session.putAllAttributes(inputFile, attributes);
+    }
+
+    private FileFormat getInputFormat(ProcessContext context, FlowFile inputFile) {
+        String selectedFormat = context.getProperty(INPUT_FORMAT).getValue();
+
+        FileFormat inputFormat;
+        if (selectedFormat == null) {
+            String filename = inputFile.getAttribute("filename");
+            if (filename == null) {
+                throw new ProcessException("Unable to determine " + INPUT_FORMAT.getDisplayName() +
+                                           " because flow file does not have filename attribute set");
+            }
+            else {
+                filename = Compression.stripSuffix(filename);
+                Optional<RDFFormat> rdfFormat = RDFFormats.forFile(filename);
+                if (rdfFormat.isPresent() && !rdfFormat.get().name().isEmpty()) {
+                    inputFormat = rdfFormat.get();
+                }
+                else if (filename.toLowerCase().endsWith("json") || isNDJSON(filename)) {
+                    inputFormat = QueryResultFormats.JSON;
+                }
+                else {
+                    inputFormat = QueryResultFormats.CSV;
+                }
+            }
+        }
+        else {
+            inputFormat = INPUT_FORMATS.get(selectedFormat);
+            if (inputFormat == null) {
+                throw new ProcessException(INPUT_FORMAT.getDisplayName() + " is not a supported value: " + selectedFormat);
+            }
+        }
+        return inputFormat;
+    }
+
+    /**
+     * Identifies the content of the FlowFile in its checkpoint
+     */
+    private static String fingerprint(ProcessSession session, FlowFile inputFile) throws IOException {
+        try (InputStream in = session.read(inputFile)) {
+            return Checkpoints.fingerprint(in);
+        }
+    }
+
+    /**
+     * Opens the content of the FlowFile, decompressing it if it is compressed
+     */
+    private static InputStream read(ProcessContext context, ProcessSession session, FlowFile inputFile) throws IOException {
+        InputStream in = session.read(inputFile);
+        try {
+            Compression compression = getCompression(context, inputFile);
+            return compression == null
+                   ? Compression.detectAndDecompress(in)
+                   : compression.decompress(in);
+        }
+        catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the compression of the FlowFile, or {@code null} if it can only be detected from the content
+     */
+    private static Compression getCompression(ProcessContext context, FlowFile inputFile) {
+        String selectedCompression = context.getProperty(COMPRESSION).getValue();
+        if (!COMPRESSION_AUTO_DETECT.equals(selectedCompression)) {
+            return Compression.forDisplayName(selectedCompression);
+        }
+
+        Compression compression = Compression.forFileName(inputFile.getAttribute(CoreAttributes.FILENAME.key()));
+        if (compression == Compression.NONE) {
+            compression = Compression.forMimeType(inputFile.getAttribute(CoreAttributes.MIME_TYPE.key()));
+        }
+        return compression == Compression.NONE ? null : compression;
+    }
+
+    /**
+     * FlowFiles with the same key are added to the same database and graph in the same format
+     */
+    private static final class BatchKey {
+        private final String mConnectionURL;
+        private final String mTargetGraph;
+        private final FileFormat mFormat;
+        private final String mMappingsFile;
+        private final String mPropertiesFile;
+        private final Properties mOptions;
+
+        private BatchKey(String connectionURL, String targetGraph, FileFormat format, String mappingsFile,
+                         String propertiesFile, Properties options) {
+            mConnectionURL = connectionURL;
+            mTargetGraph = targetGraph;
+            mFormat = format;
+            mMappingsFile = mappingsFile;
+            mPropertiesFile = propertiesFile;
+            mOptions = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey that = (BatchKey) o;
+            return Objects.equals(mConnectionURL, that.mConnectionURL) &&
+                   Objects.equals(mTargetGraph, that.mTargetGraph) &&
+                   Objects.equals(mFormat, that.mFormat) &&
+                   Objects.equals(mMappingsFile, that.mMappingsFile) &&
+                   Objects.equals(mPropertiesFile, that.mPropertiesFile) &&
+                   Objects.equals(mOptions, that.mOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mConnectionURL, mTargetGraph, mFormat, mMappingsFile, mPropertiesFile, mOptions);
+        }
+    }
+
+    /**
+     * The content of several FlowFiles, read one after the other. A line break is added after content that does not
+     * end with one, and the first line of all but the first FlowFile is skipped if the content has a header.
+     */
+    private static final class ConcatenatedInputStream extends InputStream {
+        private final ProcessContext mContext;
+        private final ProcessSession mSession;
+        private final Iterator<FlowFile> mInputFiles;
+        private final boolean mSkipHeaders;
+        private InputStream mCurrent;
+        private boolean mFirst = true;
+        private int mLast = '\n';
+
+        private ConcatenatedInputStream(ProcessContext context, ProcessSession session, List<FlowFile> inputFiles,
+                                        boolean skipHeaders) {
+            mContext = context;
+            mSession = session;
+            mInputFiles = inputFiles.iterator();
+            mSkipHeaders = skipHeaders;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (mCurrent == null) {
+                    if (!mInputFiles.hasNext()) {
+                        return -1;
+                    }
+                    if (mLast != '\n') {
+                        mLast = '\n';
+                        b[off] = '\n';
+                        return 1;
+                    }
+                    mCurrent = StardogPut.read(mContext, mSession, mInputFiles.next());
+                    if (!mFirst && mSkipHeaders) {
+                        int skipped;
+                        while ((skipped = mCurrent.read()) != -1 && skipped != '\n') {
+                            // Skip the header
+                        }
+                    }
+                    mFirst = false;
+                }
+
+                int read = mCurrent.read(b, off, len);
+                if (read == -1) {
+                    mCurrent.close();
+                    mCurrent = null;
+                    continue;
+                }
+                if (read > 0) {
+                    mLast = b[off + read - 1];
+                }
+                return read;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mCurrent != null) {
+                mCurrent.close();
+                mCurrent = null;
+            }
+        }
+    }
+
+    /**
+     * Accepts FlowFiles until either the number of FlowFiles or their total size reaches the limit. The first FlowFile
+     * is always accepted so a FlowFile larger than the limit is not stuck in the queue.
+     */
+    private static final class BatchFilter implements FlowFileFilter {
+        private final int mMaxCount;
+        private final long mMaxBytes;
+        private int mCount;
+        private long mBytes;
+        private boolean mFull;
+
+        private BatchFilter(int maxCount, long maxBytes) {
+            mMaxCount = maxCount;
+            mMaxBytes = maxBytes;
+        }
+
+        @Override
+        public FlowFileFilterResult filter(FlowFile flowFile) {
+            if (mCount > 0 && mBytes + flowFile.getSize() > mMaxBytes) {
+                mFull = true;
+                return FlowFileFilterResult.REJECT_AND_TERMINATE;
+            }
+            mCount++;
+            mBytes += flowFile.getSize();
+            if (mCount >= mMaxCount || mBytes >= mMaxBytes) {
+                mFull = true;
+                return FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+            }
+            return FlowFileFilterResult.ACCEPT_AND_CONTINUE;
+        }
+
+        private boolean isFull() {
+            return mFull;
+        }
     }
 
     static class PropertySetter {
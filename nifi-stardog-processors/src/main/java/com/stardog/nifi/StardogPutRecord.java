@@ -0,0 +1,264 @@
+package com.stardog.nifi;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.stardog.api.Connection;
+import com.stardog.stark.IRI;
+import com.stardog.stark.Values;
+import com.stardog.stark.io.RDFFormats;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.apache.nifi.annotation.behavior.DynamicProperty;
+import org.apache.nifi.annotation.behavior.EventDriven;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.expression.ExpressionLanguageScope;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessorInitializationContext;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.RecordReaderFactory;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+
+@Tags({ "stardog", "put", "write", "rdf", "record", "avro", "parquet", "json", "csv" })
+@CapabilityDescription("Put records into a Stardog database. The records are read with the configured Record Reader and " +
+                       "mapped to statements in the processor, with templates that are compiled once per record " +
+                       "schema, so no import job is started on the server. The statements are added in transactions " +
+                       "of a bounded size while the records are read, so memory use does not depend on the size of " +
+                       "the FlowFile. A FlowFile that fails part of the way through may be partially loaded.")
+@DynamicProperty(name = "A predicate IRI",
+                 value = "An object template",
+                 description = "Adds a statement with this predicate for every record. The object is a typed literal " +
+                               "for a template of a single field such as {price}, an IRI for a template within angle " +
+                               "brackets such as <http://example.com/product/{sku}>, and a string literal otherwise.",
+                 expressionLanguageScope = ExpressionLanguageScope.NONE)
+@WritesAttributes({
+		@WritesAttribute(attribute = StardogPutRecord.RECORD_COUNT_ATTRIBUTE, description = "The number of records read"),
+		@WritesAttribute(attribute = StardogPut.STATEMENTS_LOADED_ATTRIBUTE, description = "The number of statements " +
+				"that were committed"),
+		@WritesAttribute(attribute = StardogPut.COMMITS_ATTRIBUTE, description = "The number of transactions that " +
+				"were committed")
+})
+@EventDriven
+@InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
+public class StardogPutRecord extends AbstractStardogProcessor {
+
+	static final String RECORD_COUNT_ATTRIBUTE = "record.count";
+
+	public static final PropertyDescriptor RECORD_READER =
+			new PropertyDescriptor.Builder()
+					.name("Record Reader")
+					.description("The Record Reader to read the records of incoming FlowFiles with.")
+					.required(true)
+					.identifiesControllerService(RecordReaderFactory.class)
+					.build();
+
+	public static final PropertyDescriptor SUBJECT_TEMPLATE =
+			new PropertyDescriptor.Builder()
+					.name("Subject Template")
+					.description("The IRI of the subject of each record, where every {field} is replaced by the value " +
+					             "of the field, e.g. http://example.com/person/{id}. Records that lack a value for one " +
+					             "of the fields are skipped.")
+					.required(true)
+					.addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+					.build();
+
+	public static final PropertyDescriptor RECORD_CLASS =
+			new PropertyDescriptor.Builder()
+					.name("Record Class")
+					.description("If set, every subject is stated to be of this class.")
+					.required(false)
+					.addValidator(IRI_VALIDATOR)
+					.build();
+
+	public static final PropertyDescriptor PREDICATE_NAMESPACE =
+			new PropertyDescriptor.Builder()
+					.name("Predicate Namespace")
+					.description("If set, every field of a record is also mapped to a typed literal, with the " +
+					             "namespace followed by the name of the field as predicate, as in auto-generated " +
+					             "mappings.")
+					.required(false)
+					.addValidator(IRI_VALIDATOR)
+					.build();
+
+	public static final PropertyDescriptor STATEMENTS_PER_COMMIT =
+			new PropertyDescriptor.Builder()
+					.name("Statements Per Commit")
+					.description("The number of statements added in each transaction.")
+					.required(true)
+					.defaultValue("100000")
+					.addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+					.build();
+
+	private static final List<PropertyDescriptor> PROPERTIES =
+			ImmutableList.<PropertyDescriptor>builder()
+					.addAll(DEFAULT_PROPERTIES)
+					.add(RECORD_READER)
+					.add(SUBJECT_TEMPLATE)
+					.add(RECORD_CLASS)
+					.add(PREDICATE_NAMESPACE)
+					.add(StardogPut.TARGET_GRAPH)
+					.add(STATEMENTS_PER_COMMIT)
+					.build();
+
+	/**
+	 * The mappings compiled for the schemas seen since the processor was scheduled
+	 */
+	private final Cache<RecordSchema, RecordMapping> mMappings = CacheBuilder.newBuilder()
+	                                                                         .maximumSize(100)
+	                                                                         .build();
+
+	@Override
+	protected void init(ProcessorInitializationContext context) {
+	}
+
+	@Override
+	protected void initialize(ProcessContext context) {
+		// The mappings depend on the properties, which may have changed while the processor was stopped
+		mMappings.invalidateAll();
+	}
+
+	@Override
+	public Set<Relationship> getRelationships() {
+		return DEFAULT_RELATIONSHIPS;
+	}
+
+	@Override
+	public List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+		return PROPERTIES;
+	}
+
+	@Override
+	protected PropertyDescriptor getSupportedDynamicPropertyDescriptor(String propertyDescriptorName) {
+		return new PropertyDescriptor.Builder()
+				.name(propertyDescriptorName)
+				.displayName("Predicate " + propertyDescriptorName)
+				.description("The object template of statements with this predicate.")
+				.dynamic(true)
+				.required(false)
+				.expressionLanguageSupported(ExpressionLanguageScope.NONE)
+				.addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+				.build();
+	}
+
+	@Override
+	protected void customValidate(ValidationContext validationContext, Set<ValidationResult> results) {
+		for (PropertyDescriptor descriptor : validationContext.getProperties().keySet()) {
+			if (descriptor.isDynamic()) {
+				ValidationResult result = IRI_VALIDATOR.validate(descriptor.getName(), descriptor.getName(), validationContext);
+				if (!result.isValid()) {
+					results.add(new ValidationResult.Builder().subject(descriptor.getDisplayName())
+					                                          .input(descriptor.getName())
+					                                          .valid(false)
+					                                          .explanation("The name of the property must be a predicate IRI")
+					                                          .build());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void onTrigger(ProcessContext context, ProcessSession session) throws ProcessException {
+		if (!isServerAvailable(context)) {
+			return;
+		}
+
+		FlowFile inputFile = session.get();
+		if (inputFile == null) {
+			return;
+		}
+
+		Stopwatch stopwatch = Stopwatch.createStarted();
+
+		RecordReaderFactory readerFactory = context.getProperty(RECORD_READER).asControllerService(RecordReaderFactory.class);
+		long records = 0;
+		BatchingRDFHandler handler = null;
+		try (ConnectionLease lease = connect(context, inputFile)) {
+			Connection connection = lease.get();
+			IRI targetGraph = toIRI(context, inputFile, context.getProperty(StardogPut.TARGET_GRAPH).evaluateAttributeExpressions(inputFile).getValue(), connection, Values.DEFAULT_GRAPH);
+			handler = new BatchingRDFHandler(context.getProperty(STATEMENTS_PER_COMMIT).asInteger(), 0,
+			                                 statements -> addStatements(context, lease, statements, RDFFormats.NTRIPLES, targetGraph),
+			                                 committed -> {});
+
+			try (InputStream in = session.read(inputFile);
+			     RecordReader reader = readerFactory.createRecordReader(inputFile, in, getLogger())) {
+				handler.start();
+				Record record;
+				while ((record = reader.nextRecord()) != null) {
+					getMapping(context, record.getSchema()).map(record, handler::handle);
+					records++;
+				}
+				handler.end();
+			}
+
+			getLogger().info("Finished ingesting {} records as {} statements into Stardog in {} transactions; transferring to 'success'",
+			                 new Object[] { records, handler.getCommittedStatements(), handler.getCommits() });
+		}
+		catch (Throwable t) {
+			if (handler != null) {
+				inputFile = putAttributes(session, inputFile, records, handler);
+			}
+			transferToFailure(context, session, inputFile, t);
+			return;
+		}
+
+		inputFile = putAttributes(session, inputFile, records, handler);
+		session.getProvenanceReporter()
+		       .modifyContent(inputFile, "Ingested " + records + " records into Stardog",
+		                      stopwatch.elapsed(TimeUnit.MILLISECONDS));
+		transferToSuccess(session, inputFile);
+	}
+
+	private RecordMapping getMapping(ProcessContext context, RecordSchema schema) {
+		RecordMapping mapping = mMappings.getIfPresent(schema);
+		if (mapping == null) {
+			mapping = compile(context, schema);
+			mMappings.put(schema, mapping);
+		}
+		return mapping;
+	}
+
+	private static RecordMapping compile(ProcessContext context, RecordSchema schema) {
+		Map<IRI, String> objectTemplates = Maps.newLinkedHashMap();
+		context.getProperties().forEach((descriptor, value) -> {
+			if (descriptor.isDynamic() && value != null) {
+				objectTemplates.put(Values.iri(descriptor.getName()), value);
+			}
+		});
+
+		return RecordMapping.compile(schema,
+		                             context.getProperty(SUBJECT_TEMPLATE).getValue(),
+		                             context.getProperty(RECORD_CLASS).isSet()
+		                             ? Values.iri(context.getProperty(RECORD_CLASS).getValue())
+		                             : null,
+		                             objectTemplates,
+		                             context.getProperty(PREDICATE_NAMESPACE).getValue());
+	}
+
+	private static FlowFile putAttributes(ProcessSession session, FlowFile inputFile, long records,
+	                                      BatchingRDFHandler handler) {
+		return session.putAllAttributes(inputFile, ImmutableMap.of(RECORD_COUNT_ATTRIBUTE, String.valueOf(records),
+		                                                           StardogPut.STATEMENTS_LOADED_ATTRIBUTE, String.valueOf(handler.getCommittedStatements()),
+		                                                           StardogPut.COMMITS_ATTRIBUTE, String.valueOf(handler.getCommits())));
+	}
+}
@@ -10,7 +10,6 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.complexible.common.base.Objects2;
-import com.complexible.common.rdf.query.SPARQLUtil;
 import com.complexible.common.rdf.query.SPARQLUtil.QueryType;
 import com.complexible.stardog.api.Connection;
 import com.complexible.stardog.api.GraphQuery;
@@ -29,7 +28,6 @@ import com.stardog.stark.query.io.QueryResultWriters;
 import com.stardog.stark.query.io.SelectQueryResultWriter;
 
 import com.google.common.base.Stopwatch;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteStreams;
@@ -151,12 +149,41 @@ public class StardogReadQuery extends AbstractStardogQueryProcessor {
 					.add(OUTPUT_ATTRIBUTE)
 					.add(REASONING)
 					.add(REASONING_SCHEMA)
+					.add(STORED_QUERY_CACHE_DURATION)
 					.build();
 
+	/**
+	 * The output formats for the selected {@link #OUTPUT_FORMAT}, resolved when the processor is scheduled
+	 */
+	private volatile Map<QueryType, FileFormat> mOutputFormats;
+
 	public StardogReadQuery() {
 		super(QUERY_NAME, QUERY);
 	}
 
+	@Override
+	protected void initialize(ProcessContext context) {
+		super.initialize(context);
+		mOutputFormats = OUTPUT_FORMATS.get(context.getProperty(OUTPUT_FORMAT).getValue());
+	}
+
+	/**
+	 * Loads the writer classes of the selected output formats so the first FlowFile does not pay for it
+	 */
+	@Override
+	protected void warmUp(ProcessContext context, Connection connection) {
+		super.warmUp(context, connection);
+		OutputStream out = ByteStreams.nullOutputStream();
+		for (FileFormat format : mOutputFormats.values()) {
+			if (format instanceof RDFFormat) {
+				RDFWriters.to(out, (RDFFormat) format);
+			}
+			else {
+				QueryResultWriters.to(out, (QueryResultFormat) format);
+			}
+		}
+	}
+
 	@Override
 	protected void init(ProcessorInitializationContext context) {
 
@@ -178,7 +205,7 @@ public class StardogReadQuery extends AbstractStardogQueryProcessor {
 
 		String queryStr = context.getProperty(QUERY).getValue();
 		if (queryStr != null && !queryStr.trim().startsWith("$")) {
-			QueryType queryType = SPARQLUtil.getType(queryStr);
+			QueryType queryType = ParsedQuery.of(queryStr).getType();
 
 			if (queryType != QueryType.SELECT && queryType != QueryType.GRAPH) {
 				String msg = String.format("Unsupported query type: %s", queryType);
@@ -209,6 +236,10 @@ public class StardogReadQuery extends AbstractStardogQueryProcessor {
 
 	@Override
 	public void onTrigger(ProcessContext context, ProcessSession session) throws ProcessException {
+		if (!isServerAvailable(context)) {
+			return;
+		}
+
 		FlowFile inputFile = getOptionalFlowFile(context, session);
 		if (inputFile == null) {
 			return;
@@ -220,13 +251,13 @@ public class StardogReadQuery extends AbstractStardogQueryProcessor {
 
 		ComponentLog logger = getLogger();
 
-		try (Connection connection = connect(context, inputFile)) {
+		try (ConnectionLease lease = connectForRead(context, inputFile)) {
+			Connection connection = lease.get();
 			long queryTimeout = context.getProperty(QUERY_TIMEOUT).evaluateAttributeExpressions(inputFile).asTimePeriod(TimeUnit.MILLISECONDS);
-			String queryStr = getQueryString(context, inputFile, connection);
-			QueryType queryType = SPARQLUtil.getType(queryStr);
-			String selectedFormat = context.getProperty(OUTPUT_FORMAT).getValue();
-			Map<QueryType, FileFormat> outputFormats = OUTPUT_FORMATS.get(selectedFormat);
-			FileFormat outputFormat = outputFormats.get(queryType);
+			ParsedQuery parsedQuery = getQuery(context, inputFile, connection);
+			String queryStr = parsedQuery.getQuery();
+			QueryType queryType = parsedQuery.getType();
+			FileFormat outputFormat = mOutputFormats.get(queryType);
 			String outputAttribute = context.getProperty(OUTPUT_ATTRIBUTE).getValue();
 			boolean isByteCount = outputAttribute.equals(BYTE_COUNT);
 
@@ -246,13 +277,10 @@ public class StardogReadQuery extends AbstractStardogQueryProcessor {
 			logger.info("{} contains {} results; transferring to 'success'", outputFile, outputAttributeValue);
 			session.getProvenanceReporter()
 			       .modifyContent(outputFile, "Retrieved " + outputAttributeValue + " results", stopwatch.elapsed(TimeUnit.MILLISECONDS));
-			session.transfer(outputFile, REL_SUCCESS);
+			transferToSuccess(session, outputFile);
 		}
 		catch (Throwable t) {
-			Throwable rootCause = Throwables.getRootCause(t);
-			context.yield();
-			logger.error("{} failed! Throwable exception {}; rolling back session", this, rootCause);
-			session.transfer(inputFile, REL_FAILURE);
+			transferToFailure(context, session, inputFile, t);
 		}
 	}
 
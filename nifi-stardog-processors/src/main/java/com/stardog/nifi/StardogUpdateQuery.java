@@ -4,13 +4,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import com.complexible.common.rdf.query.SPARQLUtil;
 import com.complexible.common.rdf.query.SPARQLUtil.QueryType;
 import com.complexible.stardog.api.Connection;
 import com.complexible.stardog.api.Query;
 
 import com.google.common.base.Stopwatch;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import org.apache.nifi.annotation.behavior.EventDriven;
 import org.apache.nifi.annotation.behavior.InputRequirement;
@@ -63,6 +61,7 @@ public class StardogUpdateQuery extends AbstractStardogQueryProcessor {
 					.add(QUERY_TIMEOUT)
 					.add(REASONING)
 					.add(REASONING_SCHEMA)
+					.add(STORED_QUERY_CACHE_DURATION)
 					.build();
 
 	public StardogUpdateQuery() {
@@ -90,7 +89,7 @@ public class StardogUpdateQuery extends AbstractStardogQueryProcessor {
 
 		String queryStr = context.getProperty(QUERY).getValue();
 		if (queryStr != null && !queryStr.trim().startsWith("$")) {
-			QueryType queryType = SPARQLUtil.getType(queryStr);
+			QueryType queryType = ParsedQuery.of(queryStr).getType();
 
 			if (queryType != QueryType.UPDATE) {
 				String msg = String.format("Unsupported query type: %s", queryType);
@@ -106,6 +105,10 @@ public class StardogUpdateQuery extends AbstractStardogQueryProcessor {
 
 	@Override
 	public void onTrigger(ProcessContext context, ProcessSession session) throws ProcessException {
+		if (!isServerAvailable(context)) {
+			return;
+		}
+
 		FlowFile inputFile = getOptionalFlowFile(context, session);
 		if (inputFile == null) {
 			return;
@@ -115,8 +118,9 @@ public class StardogUpdateQuery extends AbstractStardogQueryProcessor {
 
 		ComponentLog logger = getLogger();
 
-		try (Connection connection = connect(context, inputFile)) {
-			String queryStr = getQueryString(context, inputFile, connection);
+		try (ConnectionLease lease = connect(context, inputFile)) {
+			Connection connection = lease.get();
+			String queryStr = getQuery(context, inputFile, connection).getQuery();
 			long queryTimeout = context.getProperty(QUERY_TIMEOUT).evaluateAttributeExpressions(inputFile).asTimePeriod(TimeUnit.MILLISECONDS);
 
 			Query<Void> query = connection.update(queryStr)
@@ -129,13 +133,10 @@ public class StardogUpdateQuery extends AbstractStardogQueryProcessor {
 			logger.info("Update completed; transferring {} to 'success'", inputFile);
 			session.getProvenanceReporter()
 			       .modifyContent(inputFile, "Executed update query", stopwatch.elapsed(TimeUnit.MILLISECONDS));
-			session.transfer(inputFile, REL_SUCCESS);
+			transferToSuccess(session, inputFile);
 		}
 		catch (Throwable t) {
-			Throwable rootCause = Throwables.getRootCause(t);
-			context.yield();
-			logger.error("{} failed! Throwable exception {}; rolling back session", this, rootCause);
-			session.transfer(inputFile, REL_FAILURE);
+			transferToFailure(context, session, inputFile, t);
 		}
 	}
 }
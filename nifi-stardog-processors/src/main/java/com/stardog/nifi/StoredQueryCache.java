@@ -0,0 +1,88 @@
+package com.stardog.nifi;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.complexible.stardog.api.Connection;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.nifi.processor.exception.ProcessException;
+
+/**
+ * Caches the text and type of stored queries per database for a limited amount of time so a processor that runs a
+ * stored query does not download the stored query catalog for every FlowFile.
+ */
+class StoredQueryCache {
+
+	private static final int MAX_QUERIES = 1024;
+
+	private final Cache<Key, ParsedQuery> mQueries;
+
+	/**
+	 * @param ttl the amount of time after which a stored query is fetched again; zero disables caching
+	 */
+	StoredQueryCache(long ttl, TimeUnit unit) {
+		mQueries = CacheBuilder.newBuilder()
+		                       .maximumSize(ttl > 0 ? MAX_QUERIES : 0)
+		                       .expireAfterWrite(ttl, unit)
+		                       .build();
+	}
+
+	ParsedQuery get(String database, String name, Connection connection) {
+		try {
+			// Concurrent misses for the same query wait for a single fetch
+			return mQueries.get(new Key(database, name), () -> fetch(name, connection));
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new ProcessException(e.getCause());
+		}
+	}
+
+	void invalidateAll() {
+		mQueries.invalidateAll();
+	}
+
+	private static ParsedQuery fetch(String name, Connection connection) {
+		// The admin API does not look up a single stored query, so one request per TTL is the best we can do
+		return ParsedQuery.parse(Optional.ofNullable(connection.admin()
+		                                                       .getStoredQueries()
+		                                                       .get(name))
+		                                 .orElseThrow(() -> new ProcessException("Stored query not found: " + name))
+		                                 .getQuery());
+	}
+
+	private static final class Key {
+
+		private final String mDatabase;
+
+		private final String mName;
+
+		private Key(String database, String name) {
+			mDatabase = database;
+			mName = name;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key that = (Key) o;
+			return Objects.equals(mDatabase, that.mDatabase) && Objects.equals(mName, that.mName);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(mDatabase, mName);
+		}
+	}
+}
@@ -35,7 +35,8 @@ public abstract class AbstractStardogProcessorTest {
 
 	protected static final String NIFI_STARDOG_PASSWORD_ENV = "NIFI_STARDOG_PASSWORD";
 
-	// e.g. "http://localhost:5820/nifi" - a db with reasoning.schema.graphs "urn:g1,urn:g2" and reasoning.schema "g1=urn:g1,g2=urn:g2"
+	// e.g. "http://localhost:5820/nifi" - a db with reasoning.schema.graphs "urn:g1,urn:g2", reasoning.schema "g1=urn:g1,g2=urn:g2"
+	// and graph.aliases "true"
 	protected static final String STARDOG_ENDPOINT = System.getenv(NIFI_STARDOG_ENDPOINT_ENV);
 
 	protected static final String STARDOG_USERNAME = getEnvWithDefault(NIFI_STARDOG_USERNAME_ENV, "admin");
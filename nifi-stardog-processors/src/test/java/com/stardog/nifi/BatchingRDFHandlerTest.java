@@ -0,0 +1,65 @@
+package com.stardog.nifi;
+
+import java.util.List;
+
+import com.stardog.stark.Resource;
+import com.stardog.stark.Statement;
+import com.stardog.stark.Values;
+import com.stardog.stark.vocabs.RDF;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchingRDFHandlerTest {
+
+	@Test
+	public void testBatchesAndProgress() {
+		List<Integer> batches = Lists.newArrayList();
+		List<Long> progress = Lists.newArrayList();
+		BatchingRDFHandler handler = new BatchingRDFHandler(2, 0, statements -> batches.add(statements.size()),
+		                                                    progress::add);
+
+		handle(handler, Values.iri("urn:a"), Values.iri("urn:b"), Values.iri("urn:c"));
+
+		assertEquals(ImmutableList.of(2, 1), batches);
+		assertEquals(ImmutableList.of(2L, 3L), progress);
+		assertEquals(3, handler.getCommittedStatements());
+		assertEquals(2, handler.getCommits());
+	}
+
+	@Test
+	public void testSkippedStatementsAreNotWritten() {
+		List<Integer> batches = Lists.newArrayList();
+		BatchingRDFHandler handler = new BatchingRDFHandler(2, 2, statements -> batches.add(statements.size()),
+		                                                    committed -> { });
+
+		handle(handler, Values.iri("urn:a"), Values.iri("urn:b"), Values.iri("urn:c"));
+
+		assertEquals(ImmutableList.of(1), batches);
+		assertEquals(3, handler.getCommittedStatements());
+	}
+
+	@Test
+	public void testNotResumableAfterBlankNode() {
+		List<Long> progress = Lists.newArrayList();
+		BatchingRDFHandler handler = new BatchingRDFHandler(2, 0, statements -> { }, progress::add);
+
+		handle(handler, Values.iri("urn:a"), Values.iri("urn:b"), Values.bnode(), Values.iri("urn:c"),
+		       Values.iri("urn:d"));
+
+		assertEquals(ImmutableList.of(2L, 0L, 0L), progress);
+		assertEquals(5, handler.getCommittedStatements());
+	}
+
+	private static void handle(BatchingRDFHandler handler, Resource... subjects) {
+		handler.start();
+		for (Resource subject : subjects) {
+			Statement statement = Values.statement(subject, RDF.TYPE, Values.iri("urn:Widget"));
+			handler.handle(statement);
+		}
+		handler.end();
+	}
+}
@@ -0,0 +1,85 @@
+package com.stardog.nifi;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.state.MockStateManager;
+import org.apache.nifi.util.MockComponentLog;
+import org.apache.nifi.util.MockFlowFile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class CheckpointsTest {
+
+	private static final String FINGERPRINT = "fingerprint";
+
+	private final MockStateManager mStateManager = new MockStateManager(this);
+
+	private final Checkpoints mCheckpoints = new Checkpoints(mStateManager, TimeUnit.HOURS.toMillis(1),
+	                                                         new MockComponentLog("checkpoints", this));
+
+	@Test
+	public void testResumeSameFlowFile() {
+		MockFlowFile flowFile = flowFile("uuid-1", "some content");
+
+		assertEquals(0, mCheckpoints.get(flowFile, FINGERPRINT, Checkpoints.BYTE_OFFSET));
+		mCheckpoints.put(flowFile, FINGERPRINT, Checkpoints.BYTE_OFFSET, 5);
+		assertEquals(5, mCheckpoints.get(flowFile, FINGERPRINT, Checkpoints.BYTE_OFFSET));
+
+		mCheckpoints.remove(flowFile);
+		assertEquals(0, mCheckpoints.get(flowFile, FINGERPRINT, Checkpoints.BYTE_OFFSET));
+	}
+
+	@Test
+	public void testIgnoreMismatchedCheckpoint() {
+		mCheckpoints.put(flowFile("uuid-1", "some content"), FINGERPRINT, Checkpoints.BYTE_OFFSET, 5);
+
+		assertEquals(0, mCheckpoints.get(flowFile("uuid-2", "some content"), FINGERPRINT, Checkpoints.BYTE_OFFSET));
+		assertEquals(0, mCheckpoints.get(flowFile("uuid-1", "other content"), FINGERPRINT, Checkpoints.BYTE_OFFSET));
+		assertEquals(0, mCheckpoints.get(flowFile("uuid-1", "some content"), FINGERPRINT, Checkpoints.STATEMENT_INDEX));
+		assertEquals(0, mCheckpoints.get(flowFile("uuid-1", "some content"), "other", Checkpoints.BYTE_OFFSET));
+	}
+
+	@Test
+	public void testExpiredCheckpoint() {
+		Checkpoints checkpoints = new Checkpoints(mStateManager, -1, new MockComponentLog("checkpoints", this));
+		MockFlowFile flowFile = flowFile("uuid-1", "some content");
+
+		checkpoints.put(flowFile, FINGERPRINT, Checkpoints.STATEMENT_INDEX, 100);
+		assertEquals(0, checkpoints.get(flowFile, FINGERPRINT, Checkpoints.STATEMENT_INDEX));
+	}
+
+	@Test
+	public void testRemoveExpiredCheckpoints() {
+		Checkpoints checkpoints = new Checkpoints(mStateManager, -1, new MockComponentLog("checkpoints", this));
+
+		checkpoints.put(flowFile("uuid-1", "some content"), FINGERPRINT, Checkpoints.BYTE_OFFSET, 5);
+		assertEquals(ImmutableSet.of("uuid-1"), checkpoints.removeExpired());
+		assertEquals(ImmutableSet.of(), checkpoints.removeExpired());
+	}
+
+	@Test
+	public void testFingerprintOfFirstBytes() throws Exception {
+		byte[] content = new byte[Checkpoints.FINGERPRINT_BYTES + 1];
+		String fingerprint = Checkpoints.fingerprint(new ByteArrayInputStream(content));
+
+		content[Checkpoints.FINGERPRINT_BYTES] = 1;
+		assertEquals(fingerprint, Checkpoints.fingerprint(new ByteArrayInputStream(content)));
+
+		content[0] = 1;
+		assertNotEquals(fingerprint, Checkpoints.fingerprint(new ByteArrayInputStream(content)));
+	}
+
+	private static MockFlowFile flowFile(String uuid, String content) {
+		MockFlowFile flowFile = new MockFlowFile(1);
+		flowFile.putAttributes(ImmutableMap.of(CoreAttributes.UUID.key(), uuid));
+		flowFile.setData(content.getBytes(StandardCharsets.UTF_8));
+		return flowFile;
+	}
+}
@@ -0,0 +1,131 @@
+package com.stardog.nifi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedLoaderTest {
+
+	private static final String CONTENT = lines(100);
+
+	@Test
+	public void testChunksEndOnLineBoundaries() throws Exception {
+		Map<Integer, String> chunks = new ConcurrentSkipListMap<>();
+
+		ChunkedLoader.Result result = new ChunkedLoader(100, 3, 0).load(input(CONTENT), chunk -> collect(chunks, chunk),
+		                                                                offset -> {});
+
+		assertNull(result.getFailure());
+		assertTrue(chunks.size() > 1);
+		assertEquals(chunks.size(), result.getSubmittedChunks());
+		assertEquals(chunks.size(), result.getCommittedChunks());
+		assertEquals(CONTENT.length(), result.getCommittedOffset());
+		assertEquals(CONTENT, String.join("", chunks.values()));
+		chunks.values().forEach(chunk -> assertTrue(chunk.endsWith("\n")));
+	}
+
+	@Test
+	public void testCommittedOffsetStopsAtFailedChunk() throws Exception {
+		List<Long> progress = new CopyOnWriteArrayList<>();
+
+		ChunkedLoader.Result result = new ChunkedLoader(100, 1, 0).load(input(CONTENT), chunk -> {
+			if (chunk.getIndex() == 2) {
+				throw new IllegalStateException("bad chunk");
+			}
+		}, progress::add);
+
+		assertTrue(result.hasFailed());
+		assertEquals("bad chunk", result.getFailure().getMessage());
+		assertEquals(2, result.getCommittedChunks());
+		assertEquals(1, result.getFailedChunks().size());
+		assertEquals(result.getFailedChunks().get(0).getOffset(), result.getCommittedOffset());
+		assertFalse(result.getSubmittedChunks() > 3);
+		assertEquals(2, progress.size());
+		assertEquals(Long.valueOf(result.getCommittedOffset()), progress.get(1));
+	}
+
+	@Test
+	public void testResumeFromOffset() throws Exception {
+		int offset = CONTENT.indexOf("<urn:s50>");
+		Map<Integer, String> chunks = new ConcurrentSkipListMap<>();
+
+		ChunkedLoader.Result result = new ChunkedLoader(100, 2, offset).load(input(CONTENT.substring(offset)),
+		                                                                     chunk -> collect(chunks, chunk),
+		                                                                     position -> {});
+
+		assertEquals(CONTENT.length(), result.getCommittedOffset());
+		assertEquals(CONTENT.substring(offset), String.join("", chunks.values()));
+	}
+
+	@Test
+	public void testCsvChunksEndOnRecordBoundaries() throws Exception {
+		StringBuilder csv = new StringBuilder("id,note\n");
+		for (int i = 0; i < 50; i++) {
+			csv.append(i).append(",\"line one\nline \"\"two\"\"\"\n");
+		}
+		String content = csv.toString();
+		ChunkedLoader.RecordBoundaries boundaries = new ChunkedLoader.CsvRecordBoundaries('"', '"');
+		ByteArrayInputStream in = input(content);
+		String header = new String(ChunkedLoader.readRecord(in, boundaries), StandardCharsets.UTF_8);
+		Map<Integer, String> chunks = new ConcurrentSkipListMap<>();
+
+		ChunkedLoader.Result result = new ChunkedLoader(100, 3, header.length(), boundaries).load(in, chunk -> collect(chunks, chunk),
+		                                                                                          offset -> {});
+
+		assertEquals("id,note\n", header);
+		assertTrue(chunks.size() > 1);
+		assertEquals(content.length(), result.getCommittedOffset());
+		assertEquals(content.substring(header.length()), String.join("", chunks.values()));
+		chunks.values().forEach(chunk -> assertTrue(chunk, chunk.matches("(?s)(\\d+,\"line one\nline \"\"two\"\"\"\n)+")));
+	}
+
+	@Test
+	public void testCsvEscapeCharacter() {
+		byte[] bytes = "a,'it\\'s\n',b\nc\n".getBytes(StandardCharsets.UTF_8);
+		ChunkedLoader.RecordBoundaries boundaries = new ChunkedLoader.CsvRecordBoundaries('\'', '\\');
+
+		int end = boundaries.indexOfEnd(bytes, 0, bytes.length);
+		assertEquals(bytes.length - 3, end);
+		assertEquals(bytes.length - 1, boundaries.indexOfEnd(bytes, end + 1, bytes.length));
+	}
+
+	@Test
+	public void testNdjsonChunkAsJsonArray() throws Exception {
+		String content = "{\"val\":\"1\"}\n\n{\"val\":\"2\"}\r\n  \n{\"val\":\"3\"}";
+		Map<Integer, String> chunks = new ConcurrentSkipListMap<>();
+
+		new ChunkedLoader(1024, 1, 0).load(input(content), chunk -> chunks.put(chunk.getIndex(), new String(
+				ByteStreams.toByteArray(chunk.openAsJsonArray()), StandardCharsets.UTF_8)), offset -> {});
+
+		assertEquals(1, chunks.size());
+		assertEquals("[{\"val\":\"1\"},{\"val\":\"2\"},{\"val\":\"3\"}]", chunks.get(0));
+	}
+
+	private static void collect(Map<Integer, String> chunks, ChunkedLoader.Chunk chunk) throws IOException {
+		chunks.put(chunk.getIndex(), new String(ByteStreams.toByteArray(chunk.open()), StandardCharsets.UTF_8));
+	}
+
+	private static ByteArrayInputStream input(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String lines(int count) {
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			lines.append("<urn:s").append(i).append("> <urn:p> \"").append(i).append("\" .\n");
+		}
+		return lines.toString();
+	}
+}
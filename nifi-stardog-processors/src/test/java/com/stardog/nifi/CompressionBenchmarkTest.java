@@ -0,0 +1,117 @@
+package com.stardog.nifi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures what compressing N-Triples costs and saves, to tell on which links compressing uploads and results is
+ * worth it. Run with {@code -Dnifi.stardog.benchmark=true}.
+ * <p>
+ * Two break-even bandwidths are reported for each codec. When compression, transfer and decompression happen one
+ * after the other, compression pays off below the bytes saved divided by the time spent compressing and
+ * decompressing. When they are streamed, as they are over HTTP, the transfer hides the CPU time and compression pays
+ * off as long as the link is slower than the codec, i.e. below the slower of its compression and decompression
+ * throughputs.
+ */
+public class CompressionBenchmarkTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompressionBenchmarkTest.class);
+
+	private static final int STATEMENTS = 500_000;
+
+	private static final int ROUNDS = 3;
+
+	private interface Codec {
+
+		OutputStream compress(OutputStream out) throws IOException;
+	}
+
+	@Test
+	public void testBreakEven() throws IOException {
+		Assume.assumeTrue("Set nifi.stardog.benchmark to run the compression benchmark",
+		                  Boolean.getBoolean("nifi.stardog.benchmark"));
+
+		byte[] data = nTriples(STATEMENTS);
+		LOGGER.info("Compressing {} MB of N-Triples", data.length / (1024 * 1024));
+
+		run("gzip-1", data, Compression.GZIP, out -> new GZIPOutputStream(out, 64 * 1024) {{ def.setLevel(Deflater.BEST_SPEED); }});
+		run("gzip-6", data, Compression.GZIP, out -> new GZIPOutputStream(out, 64 * 1024));
+		run("zstd-1", data, Compression.ZSTD, out -> new ZstdCompressorOutputStream(out, 1));
+		run("zstd-3", data, Compression.ZSTD, out -> new ZstdCompressorOutputStream(out, 3));
+	}
+
+	private static void run(String name, byte[] data, Compression compression, Codec codec) throws IOException {
+		long compressNanos = Long.MAX_VALUE;
+		long decompressNanos = Long.MAX_VALUE;
+		byte[] compressed = null;
+		for (int i = 0; i < ROUNDS; i++) {
+			Stopwatch stopwatch = Stopwatch.createStarted();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+			try (OutputStream out = codec.compress(bytes)) {
+				out.write(data);
+			}
+			compressNanos = Math.min(compressNanos, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+			compressed = bytes.toByteArray();
+
+			stopwatch.reset().start();
+			byte[] decompressed;
+			try (InputStream in = compression.decompress(new ByteArrayInputStream(compressed))) {
+				decompressed = ByteStreams.toByteArray(in);
+			}
+			decompressNanos = Math.min(decompressNanos, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+			assertArrayEquals(data, decompressed);
+		}
+
+		double ratio = (double) data.length / compressed.length;
+		double saved = data.length - compressed.length;
+		double compressRate = data.length / seconds(compressNanos);
+		double decompressRate = data.length / seconds(decompressNanos);
+		double serialBreakEven = saved / seconds(compressNanos + decompressNanos);
+		double streamingBreakEven = Math.min(compressRate, decompressRate);
+		LOGGER.info("{}: ratio {}, compress {} MB/s, decompress {} MB/s; worth it below {} Mbit/s serially and {} Mbit/s streamed",
+		            name, String.format("%.1f", ratio), megabytes(compressRate), megabytes(decompressRate),
+		            megabits(serialBreakEven), megabits(streamingBreakEven));
+
+		assertTrue(ratio > 1);
+	}
+
+	private static byte[] nTriples(int count) {
+		StringBuilder triples = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			triples.append("<http://example.com/widget/").append(i).append("> ")
+			       .append("<http://example.com/vocab#weight> ")
+			       .append('"').append(i % 997).append("\"^^<http://www.w3.org/2001/XMLSchema#integer> .\n");
+		}
+		return triples.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static double seconds(long nanos) {
+		return nanos / 1e9;
+	}
+
+	private static long megabytes(double bytesPerSecond) {
+		return Math.round(bytesPerSecond / (1024 * 1024));
+	}
+
+	private static long megabits(double bytesPerSecond) {
+		return Math.round(bytesPerSecond * 8 / 1e6);
+	}
+}
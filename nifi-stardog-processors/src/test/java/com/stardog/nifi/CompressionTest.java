@@ -0,0 +1,65 @@
+package com.stardog.nifi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompressionTest {
+
+	private static final String CONTENT = "<urn:s> <urn:p> \"o\" .\n";
+
+	@Test
+	public void testDetectFromFileName() {
+		assertEquals(Compression.GZIP, Compression.forFileName("data.nt.gz"));
+		assertEquals(Compression.BZIP2, Compression.forFileName("DATA.TTL.BZ2"));
+		assertEquals(Compression.ZSTD, Compression.forFileName("data.nq.zst"));
+		assertEquals(Compression.NONE, Compression.forFileName("data.nt"));
+		assertEquals("data.nt", Compression.stripSuffix("data.nt.gz"));
+		assertEquals("data.csv", Compression.stripSuffix("data.csv"));
+	}
+
+	@Test
+	public void testDetectFromMimeType() {
+		assertEquals(Compression.GZIP, Compression.forMimeType("application/gzip"));
+		assertEquals(Compression.XZ, Compression.forMimeType("application/x-xz"));
+		assertEquals(Compression.NONE, Compression.forMimeType("text/plain"));
+	}
+
+	@Test
+	public void testDetectFromContent() throws IOException {
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(gzip)) {
+			out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(CONTENT, detectAndRead(gzip.toByteArray()));
+
+		ByteArrayOutputStream bzip2 = new ByteArrayOutputStream();
+		try (OutputStream out = new BZip2CompressorOutputStream(bzip2)) {
+			out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(CONTENT, detectAndRead(bzip2.toByteArray()));
+	}
+
+	@Test
+	public void testUncompressedContentIsUnchanged() throws IOException {
+		assertEquals(CONTENT, detectAndRead(CONTENT.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("BZh9 is not bzip2", detectAndRead("BZh9 is not bzip2".getBytes(StandardCharsets.UTF_8)));
+		assertEquals("", detectAndRead(new byte[0]));
+	}
+
+	private static String detectAndRead(byte[] content) throws IOException {
+		try (InputStream in = Compression.detectAndDecompress(new ByteArrayInputStream(content))) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.stardog.nifi;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalSorterTest {
+
+	@Test
+	public void testSpilledLinesAreMergedInOrder() throws Exception {
+		Random random = new Random(42);
+		TreeSet<String> expected = new TreeSet<>();
+		try (ExternalSorter sorter = new ExternalSorter(100)) {
+			for (int i = 0; i < 1000; i++) {
+				String line = "<urn:s" + random.nextInt(500) + "> <urn:p> \"" + random.nextInt(3) + "\" .";
+				expected.add(line);
+				sorter.add(line);
+			}
+
+			assertTrue(sorter.getSpilledRuns() > 1);
+			assertEquals(ImmutableList.copyOf(expected), Lists.newArrayList(sorter.sorted()));
+		}
+	}
+
+	@Test
+	public void testLineOutputStream() throws Exception {
+		try (ExternalSorter sorter = new ExternalSorter(2)) {
+			try (OutputStream out = sorter.newLineOutputStream()) {
+				out.write("b\r\na\n\nc".getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+				out.write("a".getBytes(StandardCharsets.UTF_8));
+			}
+
+			List<String> lines = Lists.newArrayList(sorter.sorted());
+			assertEquals(ImmutableList.of("a", "b", "c"), lines);
+		}
+	}
+}
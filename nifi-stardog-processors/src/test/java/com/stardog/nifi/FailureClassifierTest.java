@@ -0,0 +1,94 @@
+package com.stardog.nifi;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.login.LoginException;
+
+import org.apache.nifi.processor.exception.ProcessException;
+import org.junit.Test;
+
+import static com.stardog.nifi.FailureClassifier.Failure.PERMANENT;
+import static com.stardog.nifi.FailureClassifier.Failure.SERVER_DOWN;
+import static com.stardog.nifi.FailureClassifier.Failure.TRANSIENT;
+import static com.stardog.nifi.FailureClassifier.classify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FailureClassifierTest {
+
+	@Test
+	public void testServerDown() {
+		assertEquals(SERVER_DOWN, classify(new RuntimeException(new ConnectException("Connection refused"))));
+		assertEquals(SERVER_DOWN, classify(new RuntimeException(new HttpStatusException(503))));
+	}
+
+	@Test
+	public void testTransient() {
+		assertEquals(TRANSIENT, classify(new RuntimeException(new SocketTimeoutException("Read timed out"))));
+		assertEquals(TRANSIENT, classify(new ConnectionPoolExhaustedException("No connection available")));
+		assertEquals(TRANSIENT, classify(new HttpStatusException(409)));
+	}
+
+	@Test
+	public void testPermanent() {
+		assertEquals(PERMANENT, classify(new ProcessException("Stored query not found: bogus")));
+		assertEquals(PERMANENT, classify(new IllegalArgumentException("Encountered \"SELEKT\" at line 1")));
+		assertEquals(PERMANENT, classify(new RuntimeException((String) null)));
+		assertEquals(PERMANENT, classify(new RuntimeException(new HttpStatusException(400))));
+	}
+
+	@Test
+	public void testMessagesAreNotInspected() {
+		assertEquals(PERMANENT, classify(new ProcessException("Unexpected token at line 503: Service Unavailable")));
+		assertEquals(PERMANENT, classify(new RuntimeException(new IllegalArgumentException(
+				"Invalid literal \"timeout\" at line 504, column 12 (conflict)"))));
+	}
+
+	@Test
+	public void testStatusOfOuterExceptionWins() {
+		assertEquals(PERMANENT, classify(new HttpStatusException(400, new HttpStatusException(503))));
+	}
+
+	@Test
+	public void testAuthenticationFailure() {
+		assertTrue(FailureClassifier.isAuthenticationFailure(new ProcessException(new HttpStatusException(401))));
+		assertTrue(FailureClassifier.isAuthenticationFailure(new RuntimeException(new LoginException("no ticket"))));
+		assertFalse(FailureClassifier.isAuthenticationFailure(new HttpStatusException(403)));
+		assertFalse(FailureClassifier.isAuthenticationFailure(new ProcessException("HTTP 401 at line 401")));
+	}
+
+	@Test
+	public void testCircuitBreaker() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 1, TimeUnit.HOURS);
+
+		assertFalse(breaker.recordServerDown());
+		assertTrue(breaker.allowRequest());
+
+		assertTrue(breaker.recordServerDown());
+		assertFalse(breaker.allowRequest());
+
+		breaker.recordSuccess();
+		assertTrue(breaker.allowRequest());
+		assertFalse(breaker.recordServerDown());
+	}
+
+	public static final class HttpStatusException extends RuntimeException {
+
+		private final int mStatusCode;
+
+		HttpStatusException(int statusCode) {
+			this(statusCode, null);
+		}
+
+		HttpStatusException(int statusCode, Throwable cause) {
+			super("HTTP " + statusCode, cause);
+			mStatusCode = statusCode;
+		}
+
+		public int getStatusCode() {
+			return mStatusCode;
+		}
+	}
+}
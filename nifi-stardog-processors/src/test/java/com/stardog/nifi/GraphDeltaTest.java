@@ -0,0 +1,98 @@
+package com.stardog.nifi;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.stardog.stark.Statement;
+import com.stardog.stark.Values;
+import com.stardog.stark.io.RDFHandler;
+import com.stardog.stark.vocabs.RDF;
+
+import com.google.common.base.Splitter;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GraphDeltaTest {
+
+	@Test
+	public void testAdditionsAndRemovals() throws Exception {
+		try (GraphDelta delta = new GraphDelta(2)) {
+			handle(delta.snapshot(), statement("urn:a"), statement("urn:b"), statement("urn:c"));
+			handle(delta.current(), statement("urn:b"), statement("urn:c"), statement("urn:d"));
+
+			ByteArrayOutputStream additions = new ByteArrayOutputStream();
+			ByteArrayOutputStream removals = new ByteArrayOutputStream();
+			delta.compute(additions, removals);
+
+			assertEquals(1, delta.getAdded());
+			assertEquals(1, delta.getRemoved());
+			assertSingleLine(additions, "<urn:a>");
+			assertSingleLine(removals, "<urn:d>");
+		}
+	}
+
+	@Test
+	public void testDuplicatesAreCountedOnce() throws Exception {
+		try (GraphDelta delta = new GraphDelta(2)) {
+			handle(delta.snapshot(), statement("urn:a"), statement("urn:a"), statement("urn:b"), statement("urn:a"));
+			handle(delta.current(), statement("urn:b"), statement("urn:b"), statement("urn:c"), statement("urn:c"));
+
+			ByteArrayOutputStream additions = new ByteArrayOutputStream();
+			ByteArrayOutputStream removals = new ByteArrayOutputStream();
+			delta.compute(additions, removals);
+
+			assertEquals(1, delta.getAdded());
+			assertEquals(1, delta.getRemoved());
+			assertSingleLine(additions, "<urn:a>");
+			assertSingleLine(removals, "<urn:c>");
+		}
+	}
+
+	@Test
+	public void testIdenticalGraphs() throws Exception {
+		try (GraphDelta delta = new GraphDelta(100)) {
+			handle(delta.snapshot(), statement("urn:a"), statement("urn:b"));
+			handle(delta.current(), statement("urn:b"), statement("urn:a"));
+
+			ByteArrayOutputStream additions = new ByteArrayOutputStream();
+			ByteArrayOutputStream removals = new ByteArrayOutputStream();
+			delta.compute(additions, removals);
+
+			assertEquals(0, delta.getAdded());
+			assertEquals(0, delta.getRemoved());
+			assertEquals(0, additions.size());
+			assertEquals(0, removals.size());
+		}
+	}
+
+	@Test(expected = ProcessException.class)
+	public void testBlankNodesAreRejected() throws Exception {
+		try (GraphDelta delta = new GraphDelta(100)) {
+			RDFHandler snapshot = delta.snapshot();
+			snapshot.start();
+			snapshot.handle(Values.statement(Values.bnode(), RDF.TYPE, Values.iri("urn:Widget")));
+		}
+	}
+
+	private static Statement statement(String subject) {
+		return Values.statement(Values.iri(subject), RDF.TYPE, Values.iri("urn:Widget"));
+	}
+
+	private static void handle(RDFHandler handler, Statement... statements) {
+		handler.start();
+		for (Statement statement : statements) {
+			handler.handle(statement);
+		}
+		handler.end();
+	}
+
+	private static void assertSingleLine(ByteArrayOutputStream out, String subject) {
+		List<String> lines = Splitter.on('\n').omitEmptyStrings().splitToList(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith(subject));
+	}
+}
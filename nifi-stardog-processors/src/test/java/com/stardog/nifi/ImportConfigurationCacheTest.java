@@ -0,0 +1,56 @@
+package com.stardog.nifi;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ImportConfigurationCacheTest {
+
+	@Rule
+	public final TemporaryFolder mFolder = new TemporaryFolder();
+
+	private final ImportConfigurationCache mCache = new ImportConfigurationCache();
+
+	@Test
+	public void testChangedFileIsReadAgain() throws Exception {
+		File mapping = write("mapping.sms", "MAPPING 1");
+		assertEquals("MAPPING 1", mCache.getMapping(mapping.getPath()));
+
+		write("mapping.sms", "MAPPING 2");
+		Files.setLastModifiedTime(mapping.toPath(), FileTime.fromMillis(mapping.lastModified() + 10_000));
+		assertEquals("MAPPING 2", mCache.getMapping(mapping.getPath()));
+	}
+
+	@Test
+	public void testFileOverridesProcessorOptions() throws Exception {
+		File properties = write("import.properties", "csv.separator=;\ncsv.header=false\n");
+		Properties processorOptions = new Properties();
+		processorOptions.setProperty("csv.separator", ",");
+		processorOptions.setProperty("csv.quote", "'");
+
+		Properties options = mCache.getOptions(processorOptions, properties.getPath());
+		assertEquals(";", options.getProperty("csv.separator"));
+		assertEquals("false", options.getProperty("csv.header"));
+		assertEquals("'", options.getProperty("csv.quote"));
+
+		// The cached options are not affected by changes to the returned copy
+		options.remove("csv.quote");
+		assertEquals("'", mCache.getOptions(processorOptions, properties.getPath()).getProperty("csv.quote"));
+		assertNull(mCache.getOptions(new Properties(), null).getProperty("csv.quote"));
+	}
+
+	private File write(String name, String content) throws Exception {
+		File file = new File(mFolder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
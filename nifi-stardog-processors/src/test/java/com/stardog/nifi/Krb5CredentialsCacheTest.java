@@ -0,0 +1,74 @@
+package com.stardog.nifi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Krb5CredentialsCacheTest {
+
+	@Test
+	public void testMetricsDrainToCounters() {
+		Krb5CredentialsCache.Metrics metrics = new Krb5CredentialsCache.Metrics();
+		metrics.recordLogin(TimeUnit.MILLISECONDS.toNanos(120), false);
+		metrics.recordLogin(TimeUnit.MILLISECONDS.toNanos(30), true);
+		metrics.recordLogin(TimeUnit.MILLISECONDS.toNanos(50), true);
+		metrics.recordRenewalFailure();
+
+		assertEquals(ImmutableMap.of(Krb5CredentialsCache.Metrics.LOGINS_COUNTER, 1L,
+		                             Krb5CredentialsCache.Metrics.RENEWALS_COUNTER, 2L,
+		                             Krb5CredentialsCache.Metrics.RENEWAL_FAILURES_COUNTER, 1L,
+		                             Krb5CredentialsCache.Metrics.NEGOTIATION_MILLIS_COUNTER, 200L),
+		             drain(metrics));
+		assertEquals(ImmutableMap.of(), drain(metrics));
+	}
+
+	@Test
+	public void testNegotiationRemainderIsKept() {
+		Krb5CredentialsCache.Metrics metrics = new Krb5CredentialsCache.Metrics();
+		metrics.recordLogin(TimeUnit.MICROSECONDS.toNanos(600), false);
+
+		assertEquals(ImmutableMap.of(Krb5CredentialsCache.Metrics.LOGINS_COUNTER, 1L), drain(metrics));
+
+		metrics.recordLogin(TimeUnit.MICROSECONDS.toNanos(600), true);
+
+		assertEquals(ImmutableMap.of(Krb5CredentialsCache.Metrics.RENEWALS_COUNTER, 1L,
+		                             Krb5CredentialsCache.Metrics.NEGOTIATION_MILLIS_COUNTER, 1L),
+		             drain(metrics));
+	}
+
+	@Test
+	public void testRenewerRunsWhileRegistered() {
+		Krb5CredentialsCache cache = Krb5CredentialsCache.getInstance();
+		assertFalse(cache.isRenewing());
+
+		cache.register();
+		cache.register();
+		assertTrue(cache.isRenewing());
+
+		cache.unregister();
+		assertTrue(cache.isRenewing());
+
+		cache.unregister();
+		assertFalse(cache.isRenewing());
+
+		// Processors stopped more often than scheduled do not stop the renewer of the next one
+		cache.unregister();
+		cache.register();
+		assertTrue(cache.isRenewing());
+		cache.unregister();
+		assertFalse(cache.isRenewing());
+	}
+
+	private static Map<String, Long> drain(Krb5CredentialsCache.Metrics metrics) {
+		Map<String, Long> counters = new HashMap<>();
+		metrics.drainTo(counters::put);
+		return counters;
+	}
+}
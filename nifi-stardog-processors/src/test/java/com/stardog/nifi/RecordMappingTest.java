@@ -0,0 +1,113 @@
+package com.stardog.nifi;
+
+import java.util.List;
+import java.util.Map;
+
+import com.stardog.stark.IRI;
+import com.stardog.stark.Statement;
+import com.stardog.stark.Values;
+import com.stardog.stark.vocabs.RDF;
+import com.stardog.stark.vocabs.XSD;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordMappingTest {
+
+	private static final String NS = "http://example.com/";
+
+	private static final RecordSchema SCHEMA = new SimpleRecordSchema(ImmutableList.of(
+			new RecordField("id", RecordFieldType.STRING.getDataType()),
+			new RecordField("name", RecordFieldType.STRING.getDataType()),
+			new RecordField("age", RecordFieldType.INT.getDataType()),
+			new RecordField("dept", RecordFieldType.STRING.getDataType())));
+
+	@Test
+	public void testTemplates() {
+		Map<IRI, String> objectTemplates = ImmutableMap.of(Values.iri(NS, "age"), "{age}",
+		                                                   Values.iri(NS, "dept"), "<" + NS + "dept/{dept}>",
+		                                                   Values.iri(NS, "label"), "{name} ({id})");
+		RecordMapping mapping = RecordMapping.compile(SCHEMA, NS + "person/{id}", Values.iri(NS, "Person"),
+		                                              objectTemplates, null);
+
+		List<Statement> statements = map(mapping, ImmutableMap.of("id", "a b", "name", "Ann", "age", 42, "dept", "R&D"));
+
+		IRI subject = Values.iri(NS, "person/a%20b");
+		assertEquals(ImmutableList.of(Values.statement(subject, RDF.TYPE, Values.iri(NS, "Person")),
+		                              Values.statement(subject, Values.iri(NS, "age"), Values.literal("42", XSD.INT)),
+		                              Values.statement(subject, Values.iri(NS, "dept"), Values.iri(NS, "dept/R&D")),
+		                              Values.statement(subject, Values.iri(NS, "label"), Values.literal("Ann (a b)"))),
+		             statements);
+	}
+
+	@Test
+	public void testMissingValues() {
+		RecordMapping mapping = RecordMapping.compile(SCHEMA, NS + "person/{id}", null,
+		                                              ImmutableMap.of(Values.iri(NS, "age"), "{age}"), NS);
+
+		assertTrue(map(mapping, ImmutableMap.of("name", "Ann")).isEmpty());
+		assertEquals(2, map(mapping, ImmutableMap.of("id", "1", "name", "Ann")).size());
+	}
+
+	@Test(expected = ProcessException.class)
+	public void testUnknownField() {
+		RecordMapping.compile(SCHEMA, NS + "person/{ssn}", null, ImmutableMap.of(), null);
+	}
+
+	@Test
+	public void testNonScalarFields() {
+		RecordSchema address = new SimpleRecordSchema(ImmutableList.of(new RecordField("city", RecordFieldType.STRING.getDataType())));
+		RecordSchema schema = new SimpleRecordSchema(ImmutableList.of(
+				new RecordField("id", RecordFieldType.STRING.getDataType()),
+				new RecordField("tags", RecordFieldType.ARRAY.getArrayDataType(RecordFieldType.STRING.getDataType())),
+				new RecordField("address", RecordFieldType.RECORD.getRecordDataType(address))));
+
+		RecordMapping mapping = RecordMapping.compile(schema, NS + "person/{id}", null,
+		                                              ImmutableMap.of(Values.iri(NS, "tag"), "{tags}"), NS);
+		List<Statement> statements = Lists.newArrayList();
+		mapping.map(new MapRecord(schema, ImmutableMap.of("id", "1",
+		                                                  "tags", new Object[] { "a", "b" },
+		                                                  "address", new MapRecord(address, ImmutableMap.of("city", "Oslo")))),
+		            statements::add);
+
+		IRI subject = Values.iri(NS, "person/1");
+		assertEquals(ImmutableList.of(Values.statement(subject, Values.iri(NS, "tag"), Values.literal("a")),
+		                              Values.statement(subject, Values.iri(NS, "tag"), Values.literal("b")),
+		                              Values.statement(subject, Values.iri(NS, "id"), Values.literal("1")),
+		                              Values.statement(subject, Values.iri(NS, "tags"), Values.literal("a")),
+		                              Values.statement(subject, Values.iri(NS, "tags"), Values.literal("b"))),
+		             statements);
+
+		assertRejected(schema, NS + "person/{tags}", ImmutableMap.of());
+		assertRejected(schema, NS + "person/{id}", ImmutableMap.of(Values.iri(NS, "city"), "{address}"));
+		assertRejected(schema, NS + "person/{id}", ImmutableMap.of(Values.iri(NS, "label"), "tagged {tags}"));
+	}
+
+	private static void assertRejected(RecordSchema schema, String subjectTemplate, Map<IRI, String> objectTemplates) {
+		try {
+			RecordMapping.compile(schema, subjectTemplate, null, objectTemplates, null);
+			fail("Expected the templates to be rejected: " + subjectTemplate + " " + objectTemplates);
+		}
+		catch (ProcessException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("has no scalar value"));
+		}
+	}
+
+	private static List<Statement> map(RecordMapping mapping, Map<String, Object> values) {
+		List<Statement> statements = Lists.newArrayList();
+		mapping.map(new MapRecord(SCHEMA, values), statements::add);
+		return statements;
+	}
+}
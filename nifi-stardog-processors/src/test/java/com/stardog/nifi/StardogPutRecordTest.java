@@ -0,0 +1,118 @@
+package com.stardog.nifi;
+
+import com.complexible.stardog.api.Connection;
+
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.serialization.record.MockRecordParser;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.stardog.nifi.StardogPutRecord.RECORD_CLASS;
+import static com.stardog.nifi.StardogPutRecord.RECORD_COUNT_ATTRIBUTE;
+import static com.stardog.nifi.StardogPutRecord.RECORD_READER;
+import static com.stardog.nifi.StardogPutRecord.STATEMENTS_PER_COMMIT;
+import static com.stardog.nifi.StardogPutRecord.SUBJECT_TEMPLATE;
+import static com.stardog.nifi.StardogTestUtils.convertQueryResult;
+import static org.junit.Assert.assertEquals;
+
+public class StardogPutRecordTest extends AbstractStardogProcessorTest {
+
+	private static final String READER_ID = "reader";
+
+	private static final String GRAPH = "tag:records";
+
+	private MockRecordParser mReader;
+
+	@Override
+	protected Class<? extends AbstractStardogProcessor> getProcessorClass() {
+		return StardogPutRecord.class;
+	}
+
+	@Before
+	public void clearAll() {
+		initStardog();
+
+		mReader = new MockRecordParser();
+		mReader.addSchemaField("id", RecordFieldType.STRING);
+		mReader.addSchemaField("name", RecordFieldType.STRING);
+		mReader.addRecord("1", "Ann");
+		mReader.addRecord("2", "Bob");
+		mReader.addRecord("3", "Cid");
+	}
+
+	@Test
+	public void testBoundedCommits() throws InitializationException {
+		assumeStardogAvailable();
+
+		TestRunner runner = newRecordTestRunner();
+		runner.enqueue("");
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 1);
+		MockFlowFile flowFile = runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS).get(0);
+		flowFile.assertAttributeEquals(RECORD_COUNT_ATTRIBUTE, "3");
+		flowFile.assertAttributeEquals(StardogPut.STATEMENTS_LOADED_ATTRIBUTE, "6");
+		flowFile.assertAttributeEquals(StardogPut.COMMITS_ATTRIBUTE, "3");
+
+		assertEquals(3, countPeople());
+	}
+
+	@Test
+	public void testFailureKeepsCommittedRecords() throws InitializationException {
+		assumeStardogAvailable();
+
+		mReader.failAfter(2);
+		TestRunner runner = newRecordTestRunner();
+		runner.enqueue("");
+		runner.run();
+
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_FAILURE, 1);
+		MockFlowFile flowFile = runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_FAILURE).get(0);
+		flowFile.assertAttributeEquals(RECORD_COUNT_ATTRIBUTE, "2");
+		flowFile.assertAttributeEquals(StardogPut.STATEMENTS_LOADED_ATTRIBUTE, "4");
+		flowFile.assertAttributeEquals(StardogPut.COMMITS_ATTRIBUTE, "2");
+
+		assertEquals(2, countPeople());
+	}
+
+	@Test
+	public void testUnknownFieldFails() throws InitializationException {
+		assumeStardogAvailable();
+
+		TestRunner runner = newRecordTestRunner();
+		runner.setProperty(SUBJECT_TEMPLATE, NS + "person/{ssn}");
+		runner.enqueue("");
+		runner.run();
+
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_FAILURE, 1);
+		runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_FAILURE)
+		      .get(0)
+		      .assertAttributeEquals(StardogPut.STATEMENTS_LOADED_ATTRIBUTE, "0");
+		assertEquals(0, countPeople());
+	}
+
+	private TestRunner newRecordTestRunner() throws InitializationException {
+		TestRunner runner = newTestRunner();
+		runner.addControllerService(READER_ID, mReader);
+		runner.enableControllerService(mReader);
+		runner.setProperty(RECORD_READER, READER_ID);
+		runner.setProperty(SUBJECT_TEMPLATE, NS + "person/{id}");
+		runner.setProperty(RECORD_CLASS, NS + "Person");
+		runner.setProperty(NS + "name", "{name}");
+		runner.setProperty(StardogPut.TARGET_GRAPH, GRAPH);
+		runner.setProperty(STATEMENTS_PER_COMMIT, "2");
+		runner.assertValid();
+		return runner;
+	}
+
+	private int countPeople() {
+		try (Connection connection = connect()) {
+			return convertQueryResult(connection.select("select * { graph <" + GRAPH + "> { ?s a <" + NS + "Person> } }")
+			                                    .execute()).size();
+		}
+	}
+}
@@ -7,17 +7,28 @@ import com.complexible.stardog.api.Connection;
 import com.stardog.stark.Values;
 import com.stardog.stark.vocabs.RDF;
 
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.junit.Before;
 import org.junit.Test;
 
 import static com.stardog.nifi.AbstractStardogProcessor.SERVER;
+import static com.stardog.nifi.StardogPut.BATCH_SIZE;
 import static com.stardog.nifi.StardogPut.CLEAR_TARGET_GRAPH;
+import static com.stardog.nifi.StardogPut.GRAPH_ALIAS;
+import static com.stardog.nifi.StardogPut.GRAPH_ALIASES;
 import static com.stardog.nifi.StardogPut.INPUT_FORMAT;
+import static com.stardog.nifi.StardogPut.LOAD_MODE;
+import static com.stardog.nifi.StardogPut.LOAD_MODE_DELTA;
 import static com.stardog.nifi.StardogPut.MAPPINGS_FILE;
+import static com.stardog.nifi.StardogPut.REPLACE_VIA_STAGING_GRAPH;
+import static com.stardog.nifi.StardogPut.STAGING_GRAPH_PREFIX;
 import static com.stardog.nifi.StardogPut.TARGET_GRAPH;
 import static com.stardog.nifi.StardogPut.UNIQUE_KEY_SETS;
 import static com.stardog.nifi.StardogTestUtils.assertQueryResult;
+import static com.stardog.nifi.StardogTestUtils.convertQueryResult;
+import static org.junit.Assert.assertEquals;
 
 public class StardogPutTest extends AbstractStardogProcessorTest {
 
@@ -63,6 +74,75 @@ public class StardogPutTest extends AbstractStardogProcessorTest {
 		runner.assertValid();
 	}
 
+	@Test
+	public void testDeltaValidation() {
+		TestRunner runner = newTestRunner();
+		runner.setProperty(LOAD_MODE, LOAD_MODE_DELTA);
+		runner.assertValid();
+
+		runner.setProperty(INPUT_FORMAT, "CSV");
+		runner.setProperty(UNIQUE_KEY_SETS, "(x)");
+		assertSingleValidationResult(runner,
+				"'Input Format' is invalid because Input Format cannot be CSV when Load Mode is Delta");
+
+		runner.setProperty(INPUT_FORMAT, "N-Triples");
+		runner.setProperty(CLEAR_TARGET_GRAPH, "true");
+		assertSingleValidationResult(runner,
+				"'Clear Target Graph' is invalid because Clear Target Graph cannot be true when Load Mode is Delta");
+
+		runner.setProperty(CLEAR_TARGET_GRAPH, "false");
+		runner.setProperty(REPLACE_VIA_STAGING_GRAPH, "true");
+		assertSingleValidationResult(runner,
+				"'Replace Via Staging Graph' is invalid because Replace Via Staging Graph cannot be true when Load Mode is Delta");
+	}
+
+	@Test
+	public void testStagingGraphValidation() {
+		TestRunner runner = newTestRunner();
+		runner.setProperty(CLEAR_TARGET_GRAPH, "true");
+		runner.setProperty(REPLACE_VIA_STAGING_GRAPH, "true");
+		assertSingleValidationResult(runner,
+				"'Target Graph' is invalid because Target Graph must be set when Replace Via Staging Graph is true since the default graph cannot be an alias");
+
+		runner.setProperty(TARGET_GRAPH, "tag:alias");
+		runner.assertValid();
+	}
+
+	@Test
+	public void testReplaceViaStagingGraph() {
+		assumeStardogAvailable();
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, "N-Triples");
+		runner.setProperty(TARGET_GRAPH, "tag:alias");
+		runner.setProperty(CLEAR_TARGET_GRAPH, "true");
+		runner.setProperty(REPLACE_VIA_STAGING_GRAPH, "true");
+
+		runner.enqueue("<" + NS + "a> a <" + NS + "Widget> .\n");
+		runner.run();
+		runner.enqueue("<" + NS + "b> a <" + NS + "Widget> .\n");
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 2);
+		String firstStagingGraph = STAGING_GRAPH_PREFIX + runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS)
+		                                                        .get(0)
+		                                                        .getAttribute(CoreAttributes.UUID.key());
+		String secondStagingGraph = STAGING_GRAPH_PREFIX + runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS)
+		                                                         .get(1)
+		                                                         .getAttribute(CoreAttributes.UUID.key());
+
+		try (Connection connection = connect()) {
+			assertEquals(1, convertQueryResult(connection.select("select * { graph <" + GRAPH_ALIASES + "> { <tag:alias> <" +
+			                                                     GRAPH_ALIAS + "> <" + secondStagingGraph + "> } }")
+			                                             .execute()).size());
+			assertEquals(0, convertQueryResult(connection.select("select * { graph <" + firstStagingGraph + "> { ?s ?p ?o } }")
+			                                             .execute()).size());
+			assertEquals(1, convertQueryResult(connection.select("select * { graph <tag:alias> { <" + NS + "b> ?p ?o } }")
+			                                             .execute()).size());
+		}
+	}
+
 	@Test
 	public void testSetServerViaVariable() {
 		TestRunner runner = newTestRunner();
@@ -83,6 +163,136 @@ public class StardogPutTest extends AbstractStardogProcessorTest {
 		runServerExpressionTest(runner);
 	}
 
+	@Test
+	public void testBatch() {
+		assumeStardogAvailable();
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, "N-Triples");
+		runner.setProperty(TARGET_GRAPH, "tag:batch");
+		runner.setProperty(BATCH_SIZE, "10");
+
+		for (int i = 0; i < 3; i++) {
+			runner.enqueue("<" + NS + i + "> <" + RDF.TYPE + "> <" + NS + "Widget> .");
+		}
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 3);
+
+		try (Connection connection = connect()) {
+			assertEquals(3, convertQueryResult(connection.select("select * { graph <tag:batch> { ?s a <" + NS + "Widget> } }")
+			                                             .execute()).size());
+		}
+	}
+
+	@Test
+	public void testBatchIsolatesBadFlowFile() {
+		assumeStardogAvailable();
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, "N-Triples");
+		runner.setProperty(TARGET_GRAPH, "tag:batch");
+		runner.setProperty(BATCH_SIZE, "10");
+
+		for (int i = 0; i < 3; i++) {
+			runner.enqueue("<" + NS + i + "> <" + RDF.TYPE + "> <" + NS + "Widget> .");
+		}
+		runner.enqueue("not n-triples");
+		runner.run();
+
+		runner.assertTransferCount(AbstractStardogProcessor.REL_SUCCESS, 3);
+		runner.assertTransferCount(AbstractStardogProcessor.REL_FAILURE, 1);
+		runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_FAILURE)
+		      .get(0)
+		      .assertAttributeEquals(StardogPut.BISECTION_DEPTH_ATTRIBUTE, "2");
+		assertEquals(Long.valueOf(2), runner.getCounterValue(StardogPut.BISECTIONS_COUNTER));
+		assertEquals(Long.valueOf(1), runner.getCounterValue(StardogPut.ISOLATED_COUNTER));
+	}
+
+	@Test
+	public void testBoundedTransactions() {
+		assumeStardogAvailable();
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, "Turtle");
+		runner.setProperty(TARGET_GRAPH, "tag:bounded");
+		runner.setProperty(StardogPut.LOAD_MODE, StardogPut.LOAD_MODE_BOUNDED_TRANSACTIONS);
+		runner.setProperty(StardogPut.STATEMENTS_PER_COMMIT, "2");
+
+		StringBuilder turtle = new StringBuilder("@prefix ex: <" + NS + "> .\n");
+		for (int i = 0; i < 5; i++) {
+			turtle.append("ex:").append(i).append(" a ex:Widget .\n");
+		}
+		runner.enqueue(turtle.toString());
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 1);
+		MockFlowFile flowFile = runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS).get(0);
+		flowFile.assertAttributeEquals(StardogPut.STATEMENTS_LOADED_ATTRIBUTE, "5");
+		flowFile.assertAttributeEquals(StardogPut.COMMITS_ATTRIBUTE, "3");
+
+		try (Connection connection = connect()) {
+			assertEquals(5, convertQueryResult(connection.select("select * { graph <tag:bounded> { ?s a <" + NS + "Widget> } }")
+			                                             .execute()).size());
+		}
+	}
+
+	@Test
+	public void testNdjsonChunkImportsEveryRecord() {
+		assumeStardogAvailable();
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, StardogPut.INPUT_FORMAT_NDJSON);
+		runner.setProperty(MAPPINGS_FILE, getTestMappingFile());
+		runner.setProperty(TARGET_GRAPH, "tag:ndjson");
+		runner.enqueue("{ \"val\" : \"1\" }\n{ \"val\" : \"2\" }\n{ \"val\" : \"3\" }\n");
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 1);
+		runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS)
+		      .get(0)
+		      .assertAttributeEquals(StardogPut.CHUNKS_TOTAL_ATTRIBUTE, "1");
+
+		try (Connection connection = connect()) {
+			assertEquals(3, convertQueryResult(connection.select("select * { graph <tag:ndjson> { ?s a <" + NS + "Widget> } }")
+			                                             .execute()).size());
+		}
+	}
+
+	@Test
+	public void testDelta() {
+		assumeStardogAvailable();
+
+		try (Connection connection = connect()) {
+			connection.update("INSERT DATA { GRAPH <tag:delta> { <" + NS + "a> a <" + NS + "Widget> . <" + NS + "b> a <" +
+			                  NS + "Widget> } }").execute();
+		}
+
+		TestRunner runner = newTestRunner();
+		runner.setProperty(INPUT_FORMAT, "N-Triples");
+		runner.setProperty(TARGET_GRAPH, "tag:delta");
+		runner.setProperty(LOAD_MODE, LOAD_MODE_DELTA);
+		runner.enqueue("<" + NS + "b> <" + RDF.TYPE + "> <" + NS + "Widget> .\n" +
+		               "<" + NS + "c> <" + RDF.TYPE + "> <" + NS + "Widget> .\n");
+		runner.run();
+
+		assertLogMessagesSize(0, runner.getLogger().getErrorMessages());
+		runner.assertAllFlowFilesTransferred(AbstractStardogProcessor.REL_SUCCESS, 1);
+		MockFlowFile flowFile = runner.getFlowFilesForRelationship(AbstractStardogProcessor.REL_SUCCESS).get(0);
+		flowFile.assertAttributeEquals(StardogPut.STATEMENTS_ADDED_ATTRIBUTE, "1");
+		flowFile.assertAttributeEquals(StardogPut.STATEMENTS_REMOVED_ATTRIBUTE, "1");
+
+		try (Connection connection = connect()) {
+			assertEquals(0, convertQueryResult(connection.select("select * { graph <tag:delta> { <" + NS + "a> ?p ?o } }")
+			                                             .execute()).size());
+			assertEquals(2, convertQueryResult(connection.select("select * { graph <tag:delta> { ?s a <" + NS + "Widget> } }")
+			                                             .execute()).size());
+		}
+	}
+
 	private void runServerExpressionTest(TestRunner runner) {
 		runner.setProperty(INPUT_FORMAT, "JSON");
 		runner.setProperty(TARGET_GRAPH, "tag:g1");
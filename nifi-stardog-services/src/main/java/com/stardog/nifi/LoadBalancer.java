@@ -0,0 +1,147 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Spreads reads across the nodes of a Stardog cluster. A node is ejected from the rotation after a number of
+ * consecutive failures to connect to it, or to answer a health check, and readmitted once it passes a health check.
+ * If every node is ejected no node is selected and reads fall back to the server of the connection string.
+ */
+class LoadBalancer {
+
+	/**
+	 * The weight of the latest latency sample in the moving average
+	 */
+	private static final double EWMA_ALPHA = 0.3;
+
+	private final List<Node> mNodes;
+
+	private final LoadBalancingStrategy mStrategy;
+
+	private final int mFailureThreshold;
+
+	private final AtomicLong mSequence = new AtomicLong();
+
+	/**
+	 * @param servers the server of the connection string followed by the servers of the other nodes
+	 */
+	LoadBalancer(List<String> servers, LoadBalancingStrategy strategy, int failureThreshold) {
+		mNodes = ImmutableList.copyOf(Lists.transform(servers, Node::new));
+		mStrategy = strategy;
+		mFailureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Returns the node that should serve the next read, or {@code null} if no node is healthy
+	 */
+	Node select() {
+		List<Node> healthy = mNodes.stream().filter(Node::isHealthy).collect(Collectors.toList());
+		if (healthy.isEmpty()) {
+			return null;
+		}
+		return mStrategy.select(healthy, mSequence.getAndIncrement());
+	}
+
+	/**
+	 * Returns true if the node is the server of the connection string, which is always the first node
+	 */
+	boolean isPrimary(Node node) {
+		return mNodes.get(0) == node;
+	}
+
+	List<Node> getNodes() {
+		return mNodes;
+	}
+
+	/**
+	 * Returns true if the node was ejected because of this failure
+	 */
+	boolean recordFailure(Node node) {
+		return node.mConsecutiveFailures.incrementAndGet() >= mFailureThreshold && node.setHealthy(false);
+	}
+
+	/**
+	 * Returns true if the node was readmitted because of this success
+	 */
+	boolean recordSuccess(Node node) {
+		node.mConsecutiveFailures.set(0);
+		return node.setHealthy(true);
+	}
+
+	static class Node {
+
+		private final String mServer;
+
+		private final AtomicInteger mOutstanding = new AtomicInteger();
+
+		private final AtomicInteger mConsecutiveFailures = new AtomicInteger();
+
+		private volatile double mLatencyNanos;
+
+		private volatile boolean mHealthy = true;
+
+		Node(String server) {
+			mServer = server;
+		}
+
+		String getServer() {
+			return mServer;
+		}
+
+		boolean isHealthy() {
+			return mHealthy;
+		}
+
+		private synchronized boolean setHealthy(boolean healthy) {
+			boolean changed = mHealthy != healthy;
+			mHealthy = healthy;
+			return changed;
+		}
+
+		int getOutstanding() {
+			return mOutstanding.get();
+		}
+
+		/**
+		 * The expected time to serve one more read: the average latency times the reads already waiting for it
+		 */
+		double getCost() {
+			return mLatencyNanos * (mOutstanding.get() + 1);
+		}
+
+		void onStart() {
+			mOutstanding.incrementAndGet();
+		}
+
+		void onFinish(long latencyNanos) {
+			mOutstanding.decrementAndGet();
+			synchronized (this) {
+				mLatencyNanos = mLatencyNanos == 0
+				                ? latencyNanos
+				                : EWMA_ALPHA * latencyNanos + (1 - EWMA_ALPHA) * mLatencyNanos;
+			}
+		}
+
+		void onAbort() {
+			mOutstanding.decrementAndGet();
+		}
+
+		@Override
+		public String toString() {
+			return mServer + "{healthy=" + mHealthy +
+			       ", outstanding=" + mOutstanding.get() +
+			       ", latency=" + TimeUnit.NANOSECONDS.toMillis((long) mLatencyNanos) + " ms}";
+		}
+	}
+}
@@ -0,0 +1,82 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses the cluster node that serves the next read from the nodes that are currently healthy.
+ */
+enum LoadBalancingStrategy {
+
+	ROUND_ROBIN("Round Robin", "Sends reads to each node in turn.") {
+		@Override
+		LoadBalancer.Node select(List<LoadBalancer.Node> nodes, long sequence) {
+			return nodes.get((int) Math.floorMod(sequence, (long) nodes.size()));
+		}
+	},
+
+	LEAST_OUTSTANDING("Least Outstanding Requests", "Sends reads to the node with the fewest reads in progress.") {
+		@Override
+		LoadBalancer.Node select(List<LoadBalancer.Node> nodes, long sequence) {
+			// Start from a rotating offset so ties are not always broken in favor of the first node
+			return min(nodes, sequence, Comparator.comparingInt(LoadBalancer.Node::getOutstanding));
+		}
+	},
+
+	LATENCY_EWMA("Latency EWMA", "Sends reads to the node with the lowest exponentially weighted moving average " +
+	                             "of its latency, multiplied by the number of reads in progress on the node plus one.") {
+		@Override
+		LoadBalancer.Node select(List<LoadBalancer.Node> nodes, long sequence) {
+			return min(nodes, sequence, Comparator.comparingDouble(LoadBalancer.Node::getCost));
+		}
+	};
+
+	private final String mDisplayName;
+
+	private final String mDescription;
+
+	LoadBalancingStrategy(String displayName, String description) {
+		mDisplayName = displayName;
+		mDescription = description;
+	}
+
+	String getDisplayName() {
+		return mDisplayName;
+	}
+
+	String getDescription() {
+		return mDescription;
+	}
+
+	/**
+	 * @param nodes    the healthy nodes; never empty
+	 * @param sequence a number that increases with every read
+	 */
+	abstract LoadBalancer.Node select(List<LoadBalancer.Node> nodes, long sequence);
+
+	static LoadBalancingStrategy forDisplayName(String displayName) {
+		for (LoadBalancingStrategy strategy : values()) {
+			if (strategy.mDisplayName.equals(displayName)) {
+				return strategy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown load balancing strategy: " + displayName);
+	}
+
+	private static LoadBalancer.Node min(List<LoadBalancer.Node> nodes, long sequence,
+	                                     Comparator<LoadBalancer.Node> comparator) {
+		int offset = (int) Math.floorMod(sequence, (long) nodes.size());
+		LoadBalancer.Node best = null;
+		for (int i = 0; i < nodes.size(); i++) {
+			LoadBalancer.Node node = nodes.get((offset + i) % nodes.size());
+			if (best == null || comparator.compare(node, best) < 0) {
+				best = node;
+			}
+		}
+		return best;
+	}
+}
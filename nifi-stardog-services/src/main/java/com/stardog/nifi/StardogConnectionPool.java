@@ -0,0 +1,311 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.complexible.stardog.api.Connection;
+import com.complexible.stardog.api.ConnectionConfiguration;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A bounded pool of connections sharing a single {@link ConnectionConfiguration}. Idle connections are kept in LIFO
+ * order so the most recently used connections are reused first and the least recently used ones become candidates for
+ * eviction. Connections that have been idle longer than {@link Settings#getValidationIntervalMillis()} are validated
+ * with a trivial query before they are handed out.
+ */
+class StardogConnectionPool {
+
+	private static final String VALIDATION_QUERY = "ASK {}";
+
+	private final ConnectionConfiguration mConfiguration;
+
+	private final Settings mSettings;
+
+	private final Semaphore mPermits;
+
+	private final Deque<IdleConnection> mIdle = new ArrayDeque<>();
+
+	private final AtomicLong mBorrowed = new AtomicLong();
+
+	private final AtomicLong mCreated = new AtomicLong();
+
+	private final AtomicLong mDestroyed = new AtomicLong();
+
+	private final AtomicLong mValidationFailures = new AtomicLong();
+
+	private final AtomicLong mExhausted = new AtomicLong();
+
+	private volatile boolean mClosed;
+
+	private volatile long mLastUsed = System.nanoTime();
+
+	StardogConnectionPool(ConnectionConfiguration configuration, Settings settings) {
+		mConfiguration = configuration;
+		mSettings = settings;
+		mPermits = new Semaphore(settings.getMaxActive(), true);
+	}
+
+	ConnectionLease borrow() {
+		if (mClosed) {
+			throw new IllegalStateException("Connection pool is closed");
+		}
+
+		boolean acquired;
+		try {
+			acquired = mPermits.tryAcquire(mSettings.getMaxWaitMillis(), TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConnectionPoolExhaustedException("Interrupted while waiting for a connection", e);
+		}
+
+		if (!acquired) {
+			mExhausted.incrementAndGet();
+			throw new ConnectionPoolExhaustedException("No connection available after waiting " +
+			                                           mSettings.getMaxWaitMillis() + " ms; all " +
+			                                           mSettings.getMaxActive() + " connections are in use");
+		}
+
+		try {
+			Connection connection = takeIdle();
+			if (connection == null) {
+				connection = create();
+			}
+			mBorrowed.incrementAndGet();
+			mLastUsed = System.nanoTime();
+			return new ConnectionLease(connection, this::release);
+		}
+		catch (RuntimeException e) {
+			mPermits.release();
+			throw e;
+		}
+	}
+
+	private void release(ConnectionLease lease) {
+		try {
+			Connection connection = lease.get();
+			if (mClosed || lease.isInvalid() || !connection.isOpen() || !offerIdle(connection)) {
+				destroy(connection);
+			}
+		}
+		finally {
+			mLastUsed = System.nanoTime();
+			mPermits.release();
+		}
+	}
+
+	private Connection takeIdle() {
+		IdleConnection idle;
+		while ((idle = pollIdle()) != null) {
+			if (isValid(idle)) {
+				return idle.mConnection;
+			}
+			mValidationFailures.incrementAndGet();
+			destroy(idle.mConnection);
+		}
+		return null;
+	}
+
+	private boolean isValid(IdleConnection idle) {
+		if (!idle.mConnection.isOpen()) {
+			return false;
+		}
+		if (System.nanoTime() - idle.mSince < TimeUnit.MILLISECONDS.toNanos(mSettings.getValidationIntervalMillis())) {
+			return true;
+		}
+		try {
+			idle.mConnection.ask(VALIDATION_QUERY).execute();
+			return true;
+		}
+		catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	private synchronized IdleConnection pollIdle() {
+		return mIdle.pollFirst();
+	}
+
+	private synchronized boolean offerIdle(Connection connection) {
+		if (mIdle.size() >= mSettings.getMaxIdle()) {
+			return false;
+		}
+		mIdle.addFirst(new IdleConnection(connection));
+		return true;
+	}
+
+	private Connection create() {
+		Connection connection = mConfiguration.connect();
+		mCreated.incrementAndGet();
+		return connection;
+	}
+
+	private void destroy(Connection connection) {
+		try {
+			connection.close();
+		}
+		catch (RuntimeException e) {
+			// The connection is being discarded so there is nothing else to do with it
+		}
+		finally {
+			mDestroyed.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Closes the connections that have been idle longer than the idle timeout, keeping at least the minimum number of
+	 * idle connections, then creates connections until the minimum is reached.
+	 */
+	void evict() {
+		List<Connection> expired = Lists.newArrayList();
+		long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(mSettings.getIdleTimeoutMillis());
+		long now = System.nanoTime();
+		synchronized (this) {
+			Iterator<IdleConnection> oldestFirst = mIdle.descendingIterator();
+			while (oldestFirst.hasNext() && mIdle.size() > mSettings.getMinIdle()) {
+				IdleConnection idle = oldestFirst.next();
+				if (now - idle.mSince < idleTimeoutNanos) {
+					break;
+				}
+				oldestFirst.remove();
+				expired.add(idle.mConnection);
+			}
+		}
+		expired.forEach(this::destroy);
+
+		ensureMinIdle();
+	}
+
+	/**
+	 * Opens, and validates by logging in, at least one connection and as many as the minimum number of idle connections
+	 */
+	void warmUp() {
+		try (ConnectionLease lease = borrow()) {
+			lease.get();
+		}
+		ensureMinIdle();
+	}
+
+	void ensureMinIdle() {
+		while (!mClosed && needsIdle()) {
+			Connection connection = create();
+			if (!offerIdle(connection)) {
+				destroy(connection);
+				break;
+			}
+		}
+	}
+
+	private synchronized boolean needsIdle() {
+		int active = mSettings.getMaxActive() - mPermits.availablePermits();
+		return mIdle.size() < mSettings.getMinIdle() && mIdle.size() + active < mSettings.getMaxActive();
+	}
+
+	/**
+	 * Returns whether none of the connections of the pool are leased
+	 */
+	boolean isUnused() {
+		return mPermits.availablePermits() == mSettings.getMaxActive();
+	}
+
+	/**
+	 * Returns the {@link System#nanoTime()} at which a connection of the pool was last borrowed or returned
+	 */
+	long getLastUsed() {
+		return mLastUsed;
+	}
+
+	boolean isClosed() {
+		return mClosed;
+	}
+
+	void close() {
+		mClosed = true;
+		List<Connection> idle = Lists.newArrayList();
+		synchronized (this) {
+			mIdle.forEach(i -> idle.add(i.mConnection));
+			mIdle.clear();
+		}
+		idle.forEach(this::destroy);
+	}
+
+	synchronized ConnectionPoolStatistics getStatistics() {
+		return new ConnectionPoolStatistics(mSettings.getMaxActive() - mPermits.availablePermits(),
+		                                    mIdle.size(),
+		                                    mBorrowed.get(),
+		                                    mCreated.get(),
+		                                    mDestroyed.get(),
+		                                    mValidationFailures.get(),
+		                                    mExhausted.get());
+	}
+
+	private static class IdleConnection {
+
+		private final Connection mConnection;
+
+		private final long mSince = System.nanoTime();
+
+		private IdleConnection(Connection connection) {
+			mConnection = connection;
+		}
+	}
+
+	static class Settings {
+
+		private final int mMinIdle;
+
+		private final int mMaxIdle;
+
+		private final int mMaxActive;
+
+		private final long mMaxWaitMillis;
+
+		private final long mIdleTimeoutMillis;
+
+		private final long mValidationIntervalMillis;
+
+		Settings(int minIdle, int maxIdle, int maxActive, long maxWaitMillis, long idleTimeoutMillis,
+		         long validationIntervalMillis) {
+			mMinIdle = minIdle;
+			mMaxIdle = maxIdle;
+			mMaxActive = maxActive;
+			mMaxWaitMillis = maxWaitMillis;
+			mIdleTimeoutMillis = idleTimeoutMillis;
+			mValidationIntervalMillis = validationIntervalMillis;
+		}
+
+		int getMinIdle() {
+			return mMinIdle;
+		}
+
+		int getMaxIdle() {
+			return mMaxIdle;
+		}
+
+		int getMaxActive() {
+			return mMaxActive;
+		}
+
+		long getMaxWaitMillis() {
+			return mMaxWaitMillis;
+		}
+
+		long getIdleTimeoutMillis() {
+			return mIdleTimeoutMillis;
+		}
+
+		long getValidationIntervalMillis() {
+			return mValidationIntervalMillis;
+		}
+	}
+}
@@ -1,16 +1,41 @@
 package com.stardog.nifi;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import com.complexible.stardog.api.ConnectionConfiguration;
+import com.complexible.stardog.api.LoginConnectionConfiguration;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
 import org.apache.nifi.annotation.lifecycle.OnEnabled;
+import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.ValidationContext;
@@ -20,16 +45,18 @@ import org.apache.nifi.controller.ConfigurationContext;
 import org.apache.nifi.controller.ControllerService;
 import org.apache.nifi.controller.ControllerServiceInitializationContext;
 import org.apache.nifi.processor.Processor;
+import org.apache.nifi.processor.util.StandardValidators;
 import org.apache.nifi.reporting.InitializationException;
 
 import static org.apache.nifi.expression.ExpressionLanguageScope.VARIABLE_REGISTRY;
 
 /**
  * A {@link ControllerService} that provides common options, such as credentials and connection string, for all
- * Stardog {@link Processor processors}.
+ * Stardog {@link Processor processors}. Connections are pooled per {@link ConnectionKey} so processors sharing the
+ * service reuse logged-in connections instead of connecting for every FlowFile.
  */
-@Tags({ "Credentials", "Authentication", "Security", "stardog" })
-@CapabilityDescription("Provides a controller service that configures a connection to Stardog.")
+@Tags({ "Credentials", "Authentication", "Security", "stardog", "pool" })
+@CapabilityDescription("Provides a controller service that configures and pools connections to Stardog.")
 public class StardogControllerService extends AbstractControllerService implements StardogClientService {
 
 	static final PropertyDescriptor SERVER = SERVER_DESCRIPTOR_BUILDER
@@ -37,7 +64,172 @@ public class StardogControllerService extends AbstractControllerService implemen
 			.expressionLanguageSupported(VARIABLE_REGISTRY)
 			.build();
 
-	private static final List<PropertyDescriptor> SERVICE_PROPERTIES = ImmutableList.of(SERVER, USERNAME, PASSWORD);
+	static final PropertyDescriptor MIN_IDLE =
+			new PropertyDescriptor.Builder().name("Min Idle Connections")
+			                                .description("The minimum number of idle connections kept open in each " +
+			                                             "pool. Idle connections above this number are closed once " +
+			                                             "they reach the idle connection timeout.")
+			                                .required(true)
+			                                .defaultValue("0")
+			                                .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor MAX_IDLE =
+			new PropertyDescriptor.Builder().name("Max Idle Connections")
+			                                .description("The maximum number of idle connections kept open in each " +
+			                                             "pool. Connections returned to a full pool are closed.")
+			                                .required(true)
+			                                .defaultValue("8")
+			                                .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor MAX_ACTIVE =
+			new PropertyDescriptor.Builder().name("Max Active Connections")
+			                                .description("The maximum number of connections of each pool that can be " +
+			                                             "in use at the same time.")
+			                                .required(true)
+			                                .defaultValue("16")
+			                                .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor MAX_WAIT =
+			new PropertyDescriptor.Builder().name("Max Wait Time")
+			                                .description("The maximum amount of time to wait for a connection when " +
+			                                             "all connections of a pool are in use. The operation fails " +
+			                                             "if no connection is returned to the pool in time.")
+			                                .required(true)
+			                                .defaultValue("30 secs")
+			                                .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor IDLE_TIMEOUT =
+			new PropertyDescriptor.Builder().name("Idle Connection Timeout")
+			                                .description("The amount of time after which an idle connection is " +
+			                                             "closed. A value of zero disables eviction of idle " +
+			                                             "connections.")
+			                                .required(true)
+			                                .defaultValue("5 mins")
+			                                .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor VALIDATION_INTERVAL =
+			new PropertyDescriptor.Builder().name("Validation Interval")
+			                                .description("Connections that have been idle for longer than this amount " +
+			                                             "of time are validated with a trivial query before they are " +
+			                                             "borrowed. A value of zero validates every connection on " +
+			                                             "borrow.")
+			                                .required(true)
+			                                .defaultValue("30 secs")
+			                                .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor MAX_POOLS =
+			new PropertyDescriptor.Builder().name("Max Connection Pools")
+			                                .description("The maximum number of connection pools kept by the service. " +
+			                                             "A pool is created for each distinct combination of " +
+			                                             "connection string, credentials and reasoning settings used " +
+			                                             "by the processors, e.g. when the processors route FlowFiles " +
+			                                             "to databases with an expression. The least recently used pool " +
+			                                             "is closed when the limit is reached, and pools that have not " +
+			                                             "been used for the idle connection timeout are closed as well. " +
+			                                             "Pools with connections in use are never closed, so the limit " +
+			                                             "may be exceeded until their connections are returned.")
+			                                .required(true)
+			                                .defaultValue("64")
+			                                .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor NAMESPACE_CACHE_DURATION =
+			new PropertyDescriptor.Builder().name("Namespace Cache Duration")
+			                                .description("The amount of time the namespaces of a database are cached " +
+			                                             "before they are fetched from Stardog again. Namespaces are " +
+			                                             "used to expand prefixed names such as the target graph and " +
+			                                             "query parameters. A value of zero disables caching.")
+			                                .required(true)
+			                                .defaultValue("5 mins")
+			                                .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor WARM_UP =
+			new PropertyDescriptor.Builder().name("Warm Up")
+			                                .description("If true, the pool of the service's connection string is " +
+			                                             "filled with its minimum number of idle connections, and at " +
+			                                             "least one, when the service is enabled, so the first FlowFile " +
+			                                             "does not wait for a login. Failing to warm up does not " +
+			                                             "prevent the service from being enabled.")
+			                                .required(true)
+			                                .defaultValue("false")
+			                                .allowableValues("true", "false")
+			                                .build();
+
+	static final PropertyDescriptor CLUSTER_ENDPOINTS =
+			new PropertyDescriptor.Builder().name("Cluster Endpoints")
+			                                .description("Comma-separated list of the servers of the other nodes of a " +
+			                                             "Stardog cluster, e.g. http://node2:5820,http://node3:5820. " +
+			                                             "Reads of processors that use the service's connection " +
+			                                             "string are spread across these servers and the server of " +
+			                                             "the connection string. Writes always go to the server of " +
+			                                             "the connection string.")
+			                                .required(false)
+			                                .expressionLanguageSupported(VARIABLE_REGISTRY)
+			                                .addValidator(StandardValidators.createListValidator(true, true, StandardValidators.URL_VALIDATOR))
+			                                .build();
+
+	static final PropertyDescriptor LOAD_BALANCING_STRATEGY =
+			new PropertyDescriptor.Builder().name("Load Balancing Strategy")
+			                                .description("How reads are spread across the nodes of the cluster when " +
+			                                             CLUSTER_ENDPOINTS.getDisplayName() + " are set.")
+			                                .required(true)
+			                                .allowableValues(Arrays.stream(LoadBalancingStrategy.values())
+			                                                       .map(strategy -> new AllowableValue(strategy.getDisplayName(),
+			                                                                                           strategy.getDisplayName(),
+			                                                                                           strategy.getDescription()))
+			                                                       .toArray(AllowableValue[]::new))
+			                                .defaultValue(LoadBalancingStrategy.ROUND_ROBIN.getDisplayName())
+			                                .build();
+
+	static final PropertyDescriptor HEALTH_CHECK_INTERVAL =
+			new PropertyDescriptor.Builder().name("Health Check Interval")
+			                                .description("How often each node of the cluster is checked by connecting " +
+			                                             "to it and running a trivial query, when " +
+			                                             CLUSTER_ENDPOINTS.getDisplayName() + " are set. Nodes that " +
+			                                             "were ejected are readmitted once they pass a health check. " +
+			                                             "If the service has no credentials of its own, ejected nodes " +
+			                                             "are readmitted on trial after this interval instead.")
+			                                .required(true)
+			                                .defaultValue("10 secs")
+			                                .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+			                                .build();
+
+	static final PropertyDescriptor UNHEALTHY_THRESHOLD =
+			new PropertyDescriptor.Builder().name("Unhealthy Threshold")
+			                                .description("The number of consecutive failures to connect to a node of " +
+			                                             "the cluster, or to pass a health check, after which the node " +
+			                                             "is ejected and no longer receives reads until it passes a " +
+			                                             "health check.")
+			                                .required(true)
+			                                .defaultValue("3")
+			                                .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+			                                .build();
+
+	private static final List<PropertyDescriptor> SERVICE_PROPERTIES =
+			ImmutableList.of(SERVER, USERNAME, PASSWORD, MIN_IDLE, MAX_IDLE, MAX_ACTIVE, MAX_WAIT, IDLE_TIMEOUT,
+			                 VALIDATION_INTERVAL, MAX_POOLS, NAMESPACE_CACHE_DURATION, WARM_UP, CLUSTER_ENDPOINTS,
+			                 LOAD_BALANCING_STRATEGY, HEALTH_CHECK_INTERVAL, UNHEALTHY_THRESHOLD);
+
+	private static final String HEALTH_CHECK_QUERY = "ASK {}";
+
+	/**
+	 * The key of processors that use the connection string and credentials of the service without reasoning
+	 */
+	private static final ConnectionKey DEFAULT_KEY = new ConnectionKey(null, null);
+
+	private static final long MAX_EVICTION_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	private static final RemovalListener<ConnectionKey, StardogConnectionPool> CLOSE_POOL =
+			notification -> notification.getValue().close();
+
+	private volatile Cache<ConnectionKey, StardogConnectionPool> pools = CacheBuilder.newBuilder().build();
 
 	private String connectionURL;
 
@@ -45,6 +237,23 @@ public class StardogControllerService extends AbstractControllerService implemen
 
 	private String password;
 
+	private StardogConnectionPool.Settings poolSettings;
+
+	private int maxPools = Integer.MAX_VALUE;
+
+	private long poolIdleTimeoutNanos;
+
+	private volatile NamespaceCache namespaceCache = new NamespaceCache(0, TimeUnit.MILLISECONDS);
+
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Balances reads across the nodes of the cluster, or {@code null} if no cluster endpoints are configured
+	 */
+	private volatile LoadBalancer loadBalancer;
+
+	private ScheduledExecutorService healthChecker;
+
 	@Override
 	protected void init(ControllerServiceInitializationContext context) throws InitializationException {
 		super.init(context);
@@ -55,6 +264,165 @@ public class StardogControllerService extends AbstractControllerService implemen
 		this.connectionURL = context.getProperty(SERVER).evaluateAttributeExpressions().getValue();
 		this.username = evaluatePropertyValueOrNull(context, USERNAME);
 		this.password = evaluatePropertyValueOrNull(context, PASSWORD);
+
+		long idleTimeout = context.getProperty(IDLE_TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS);
+		this.poolSettings = new StardogConnectionPool.Settings(context.getProperty(MIN_IDLE).asInteger(),
+		                                                       context.getProperty(MAX_IDLE).asInteger(),
+		                                                       context.getProperty(MAX_ACTIVE).asInteger(),
+		                                                       context.getProperty(MAX_WAIT).asTimePeriod(TimeUnit.MILLISECONDS),
+		                                                       idleTimeout,
+		                                                       context.getProperty(VALIDATION_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS));
+
+		this.namespaceCache = new NamespaceCache(context.getProperty(NAMESPACE_CACHE_DURATION)
+		                                                .asTimePeriod(TimeUnit.MILLISECONDS),
+		                                         TimeUnit.MILLISECONDS);
+
+		// Pools are only closed by the service once none of their connections are leased, see evictPools(int)
+		this.maxPools = context.getProperty(MAX_POOLS).asInteger();
+		this.poolIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		this.pools = CacheBuilder.newBuilder().removalListener(CLOSE_POOL).build();
+
+		if (idleTimeout > 0) {
+			long period = Math.max(1L, Math.min(idleTimeout / 2, MAX_EVICTION_PERIOD_MILLIS));
+			this.evictor = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("stardog-pool-evictor-%d").setDaemon(true).build());
+			this.evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		PropertyValue endpoints = context.getProperty(CLUSTER_ENDPOINTS);
+		if (endpoints.isSet()) {
+			this.loadBalancer = new LoadBalancer(getClusterServers(endpoints.evaluateAttributeExpressions().getValue()),
+			                                     LoadBalancingStrategy.forDisplayName(context.getProperty(LOAD_BALANCING_STRATEGY).getValue()),
+			                                     context.getProperty(UNHEALTHY_THRESHOLD).asInteger());
+			long period = context.getProperty(HEALTH_CHECK_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+			this.healthChecker = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("stardog-health-check-%d").setDaemon(true).build());
+			this.healthChecker.scheduleWithFixedDelay(this::checkHealth, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		if (context.getProperty(WARM_UP).asBoolean() && isCredentialsSet()) {
+			warmUp();
+		}
+	}
+
+	/**
+	 * The server of the connection string followed by the other cluster endpoints, without duplicates
+	 */
+	private List<String> getClusterServers(String endpoints) {
+		Set<String> servers = Sets.newLinkedHashSet();
+		servers.add(CharMatcher.is('/').trimTrailingFrom(ConnectionConfiguration.from(connectionURL)
+		                                                                        .get(LoginConnectionConfiguration.SERVER)));
+		Splitter.on(',')
+		        .trimResults()
+		        .omitEmptyStrings()
+		        .split(endpoints)
+		        .forEach(endpoint -> servers.add(CharMatcher.is('/').trimTrailingFrom(endpoint)));
+		return ImmutableList.copyOf(servers);
+	}
+
+	private void checkHealth() {
+		LoadBalancer balancer = loadBalancer;
+		if (balancer == null) {
+			return;
+		}
+
+		for (LoadBalancer.Node node : balancer.getNodes()) {
+			if (!isCredentialsSet()) {
+				// The service cannot log in on its own, so ejected nodes are given another chance by the processors
+				if (!node.isHealthy() && balancer.recordSuccess(node)) {
+					getLogger().info("Readmitting Stardog node {} on trial", new Object[] { node.getServer() });
+				}
+				continue;
+			}
+
+			try (ConnectionLease lease = ConnectionLease.unpooled(getConnectionConfiguration().server(node.getServer())
+			                                                                                  .connect())) {
+				lease.get().ask(HEALTH_CHECK_QUERY).execute();
+				if (balancer.recordSuccess(node)) {
+					getLogger().info("Stardog node {} passed its health check; readmitting it", new Object[] { node.getServer() });
+				}
+			}
+			catch (RuntimeException e) {
+				getLogger().debug("Stardog node {} failed its health check", new Object[] { node.getServer() }, e);
+				if (balancer.recordFailure(node)) {
+					getLogger().warn("Ejecting Stardog node {} after it failed its health check", new Object[] { node.getServer() }, e);
+				}
+			}
+		}
+		getLogger().debug("Stardog cluster nodes: {}", new Object[] { balancer.getNodes() });
+	}
+
+	private void warmUp() {
+		try {
+			pools.get(DEFAULT_KEY, () -> new StardogConnectionPool(getConnectionConfiguration(), poolSettings)).warmUp();
+			getLogger().info("Warmed up Stardog connection pool: {}", new Object[] { getPoolStatistics() });
+		}
+		catch (ExecutionException | RuntimeException e) {
+			getLogger().warn("Failed to warm up Stardog connection pool", e);
+		}
+	}
+
+	@OnDisabled
+	public void onDisabled() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+		if (healthChecker != null) {
+			healthChecker.shutdownNow();
+			healthChecker = null;
+		}
+		if (loadBalancer != null) {
+			getLogger().info("Stardog cluster nodes: {}", new Object[] { loadBalancer.getNodes() });
+			loadBalancer = null;
+		}
+		getLogger().info("Closing Stardog connection pools: {}", new Object[] { getPoolStatistics() });
+		pools.invalidateAll();
+		namespaceCache.refreshAll();
+	}
+
+	private void evict() {
+		evictPools(maxPools);
+		for (StardogConnectionPool pool : pools.asMap().values()) {
+			try {
+				pool.evict();
+			}
+			catch (RuntimeException e) {
+				getLogger().warn("Failed to maintain idle Stardog connections", e);
+			}
+		}
+		getLogger().debug("Stardog connection pools: {}", new Object[] { getPoolStatistics() });
+	}
+
+	/**
+	 * Closes the pools that have not been used for the idle connection timeout, then the least recently used pools while
+	 * there are more than the given number. Pools with leased connections are never closed, so the number of pools may
+	 * exceed the maximum until their connections are returned.
+	 */
+	private void evictPools(int limit) {
+		ConcurrentMap<ConnectionKey, StardogConnectionPool> poolsByKey = pools.asMap();
+		long now = System.nanoTime();
+		List<Map.Entry<ConnectionKey, StardogConnectionPool>> unused = Lists.newArrayList();
+		for (Map.Entry<ConnectionKey, StardogConnectionPool> entry : poolsByKey.entrySet()) {
+			StardogConnectionPool pool = entry.getValue();
+			if (!pool.isUnused()) {
+				continue;
+			}
+			if (poolIdleTimeoutNanos > 0 && now - pool.getLastUsed() >= poolIdleTimeoutNanos) {
+				poolsByKey.remove(entry.getKey(), pool);
+			}
+			else {
+				unused.add(entry);
+			}
+		}
+
+		int excess = poolsByKey.size() - limit;
+		if (excess > 0) {
+			unused.sort(Comparator.comparingLong(entry -> entry.getValue().getLastUsed()));
+			for (Map.Entry<ConnectionKey, StardogConnectionPool> entry : Iterables.limit(unused, excess)) {
+				poolsByKey.remove(entry.getKey(), entry.getValue());
+			}
+		}
 	}
 
 	private String evaluatePropertyValueOrNull(ConfigurationContext context, PropertyDescriptor descriptor) {
@@ -83,9 +451,30 @@ public class StardogControllerService extends AbstractControllerService implemen
 			                                                       " unless " + USERNAME + " is also set.")
 			                                          .build());
 		}
+
+		validateNotGreater(validationContext, results, MIN_IDLE, MAX_IDLE);
+		validateNotGreater(validationContext, results, MAX_IDLE, MAX_ACTIVE);
 		return results;
 	}
 
+	private void validateNotGreater(ValidationContext validationContext, Set<ValidationResult> results,
+	                                PropertyDescriptor lower, PropertyDescriptor upper) {
+		try {
+			Integer lowerValue = validationContext.getProperty(lower).asInteger();
+			Integer upperValue = validationContext.getProperty(upper).asInteger();
+			if (lowerValue != null && upperValue != null && lowerValue > upperValue) {
+				results.add(new ValidationResult.Builder().subject(lower.getDisplayName())
+				                                          .valid(false)
+				                                          .explanation(lower.getDisplayName() + " cannot be greater " +
+				                                                       "than " + upper.getDisplayName())
+				                                          .build());
+			}
+		}
+		catch (NumberFormatException e) {
+			// Reported by the property validators
+		}
+	}
+
 	@Override
 	protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
 		return SERVICE_PROPERTIES;
@@ -97,8 +486,120 @@ public class StardogControllerService extends AbstractControllerService implemen
 		                              .credentialSupplier(new UsernamePasswordSupplier(username, password));
 	}
 
+	@Override
+	public String getConfigurationKey() {
+		return Hashing.sha256()
+		              .hashString(Joiner.on('|').useForNull("").join(connectionURL, username, password), StandardCharsets.UTF_8)
+		              .toString();
+	}
+
 	@Override
 	public boolean isCredentialsSet() {
 		return username != null && password != null;
 	}
+
+	@Override
+	public ConnectionLease borrowConnection(ConnectionKey key, Supplier<ConnectionConfiguration> configuration) {
+		while (true) {
+			StardogConnectionPool pool = getPool(key, configuration);
+			try {
+				return pool.borrow();
+			}
+			catch (ConnectionPoolExhaustedException e) {
+				getLogger().warn("Stardog connection pool for {} is exhausted: {}", new Object[] { key, pool.getStatistics() });
+				throw e;
+			}
+			catch (IllegalStateException e) {
+				if (!pool.isClosed()) {
+					throw e;
+				}
+				// The pool was evicted after it was looked up, so look it up again
+				pools.asMap().remove(key, pool);
+			}
+		}
+	}
+
+	private StardogConnectionPool getPool(ConnectionKey key, Supplier<ConnectionConfiguration> configuration) {
+		StardogConnectionPool pool = pools.getIfPresent(key);
+		if (pool != null) {
+			return pool;
+		}
+
+		if (pools.size() >= maxPools) {
+			// Make room for the new pool before it is created, so it cannot be evicted before it is borrowed from
+			evictPools(maxPools - 1);
+		}
+		try {
+			pool = pools.get(key, () -> new StardogConnectionPool(configuration.get(), poolSettings));
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+		return pool;
+	}
+
+	@Override
+	public ConnectionLease borrowReadConnection(ConnectionKey key, Supplier<ConnectionConfiguration> configuration) {
+		LoadBalancer balancer = loadBalancer;
+		if (balancer == null || key.getConnectionURL() != null) {
+			return borrowConnection(key, configuration);
+		}
+
+		LoadBalancer.Node node = balancer.select();
+		if (node == null) {
+			// Every node is ejected, so fall back to the node writes are pinned to
+			return borrowConnection(key, configuration);
+		}
+		if (balancer.isPrimary(node)) {
+			// Share the pool of the writes
+			return borrowFromNode(key, configuration, balancer, node);
+		}
+		return borrowFromNode(key.withServer(node.getServer()), () -> configuration.get().server(node.getServer()),
+		                      balancer, node);
+	}
+
+	private ConnectionLease borrowFromNode(ConnectionKey key, Supplier<ConnectionConfiguration> configuration,
+	                                       LoadBalancer balancer, LoadBalancer.Node node) {
+		node.onStart();
+		ConnectionLease lease;
+		try {
+			lease = borrowConnection(key, configuration);
+		}
+		catch (ConnectionPoolExhaustedException e) {
+			// The node is busy rather than down
+			node.onAbort();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			node.onAbort();
+			if (balancer.recordFailure(node)) {
+				getLogger().warn("Ejecting Stardog node {} after failing to connect to it", new Object[] { node.getServer() }, e);
+			}
+			throw e;
+		}
+
+		long start = System.nanoTime();
+		return new ConnectionLease(lease.get(), released -> {
+			node.onFinish(System.nanoTime() - start);
+			if (released.isInvalid()) {
+				lease.invalidate();
+			}
+			lease.close();
+		});
+	}
+
+	@Override
+	public NamespaceCache getNamespaceCache() {
+		return namespaceCache;
+	}
+
+	@Override
+	public ConnectionPoolStatistics getPoolStatistics() {
+		return pools.asMap()
+		            .values()
+		            .stream()
+		            .map(StardogConnectionPool::getStatistics)
+		            .reduce(ConnectionPoolStatistics.EMPTY, ConnectionPoolStatistics::plus);
+	}
 }
@@ -0,0 +1,77 @@
+// Copyright (c) 2010 - 2020, Stardog Union. <http://www.stardog.com>
+// For more information about licensing and copyright of this software, please contact
+// sales@stardog.com or visit http://stardog.com
+
+package com.stardog.nifi;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LoadBalancerTest {
+
+    private static final String NODE1 = "http://node1:5820";
+    private static final String NODE2 = "http://node2:5820";
+    private static final String NODE3 = "http://node3:5820";
+
+    @Test
+    public void testRoundRobin() {
+        LoadBalancer balancer = new LoadBalancer(Arrays.asList(NODE1, NODE2, NODE3), LoadBalancingStrategy.ROUND_ROBIN, 1);
+
+        assertEquals(NODE1, balancer.select().getServer());
+        assertEquals(NODE2, balancer.select().getServer());
+        assertEquals(NODE3, balancer.select().getServer());
+        assertEquals(NODE1, balancer.select().getServer());
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        LoadBalancer balancer = new LoadBalancer(Arrays.asList(NODE1, NODE2), LoadBalancingStrategy.LEAST_OUTSTANDING, 1);
+        balancer.getNodes().get(0).onStart();
+
+        assertEquals(NODE2, balancer.select().getServer());
+        assertEquals(NODE2, balancer.select().getServer());
+    }
+
+    @Test
+    public void testLatencyEwma() {
+        LoadBalancer balancer = new LoadBalancer(Arrays.asList(NODE1, NODE2), LoadBalancingStrategy.LATENCY_EWMA, 1);
+        LoadBalancer.Node node1 = balancer.getNodes().get(0);
+        LoadBalancer.Node node2 = balancer.getNodes().get(1);
+
+        node1.onStart();
+        node1.onFinish(TimeUnit.MILLISECONDS.toNanos(100));
+        node2.onStart();
+        node2.onFinish(TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(NODE2, balancer.select().getServer());
+        assertEquals(NODE2, balancer.select().getServer());
+    }
+
+    @Test
+    public void testEjectionAndReadmission() {
+        LoadBalancer balancer = new LoadBalancer(Arrays.asList(NODE1, NODE2), LoadBalancingStrategy.ROUND_ROBIN, 2);
+        LoadBalancer.Node node1 = balancer.getNodes().get(0);
+        LoadBalancer.Node node2 = balancer.getNodes().get(1);
+
+        assertFalse(balancer.recordFailure(node1));
+        assertTrue(balancer.recordFailure(node1));
+        assertFalse(node1.isHealthy());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(NODE2, balancer.select().getServer());
+        }
+
+        balancer.recordFailure(node2);
+        balancer.recordFailure(node2);
+        assertNull(balancer.select());
+
+        assertTrue(balancer.recordSuccess(node1));
+        assertEquals(NODE1, balancer.select().getServer());
+    }
+}
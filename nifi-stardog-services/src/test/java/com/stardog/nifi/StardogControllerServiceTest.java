@@ -9,6 +9,10 @@ import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
 public class StardogControllerServiceTest {
 
     public static final String CONTROLLER_SERVICE_NAME = "Client Service";
@@ -44,6 +48,68 @@ public class StardogControllerServiceTest {
         runner.assertValid(service);
     }
 
+    @Test
+    public void testPoolValidation() {
+        setServiceProperties();
+        runner.assertValid(service);
+
+        runner.setProperty(service, StardogControllerService.MIN_IDLE, "10");
+        runner.assertNotValid(service);
+
+        runner.setProperty(service, StardogControllerService.MAX_IDLE, "10");
+        runner.assertValid(service);
+
+        runner.setProperty(service, StardogControllerService.MAX_ACTIVE, "5");
+        runner.assertNotValid(service);
+
+        runner.setProperty(service, StardogControllerService.MAX_ACTIVE, "10");
+        runner.assertValid(service);
+    }
+
+    @Test
+    public void testClusterEndpointsValidation() {
+        setServiceProperties();
+        runner.setProperty(service, StardogControllerService.CLUSTER_ENDPOINTS, "http://node2:5820, http://node3:5820");
+        runner.assertValid(service);
+
+        runner.setProperty(service, StardogControllerService.CLUSTER_ENDPOINTS, "http://node2:5820,node3");
+        runner.assertNotValid(service);
+
+        runner.setProperty(service, StardogControllerService.CLUSTER_ENDPOINTS, "http://node2:5820");
+        runner.setProperty(service, StardogControllerService.LOAD_BALANCING_STRATEGY, "Latency EWMA");
+        runner.assertValid(service);
+
+        runner.setProperty(service, StardogControllerService.LOAD_BALANCING_STRATEGY, "Random");
+        runner.assertNotValid(service);
+    }
+
+    @Test
+    public void testPoolStatisticsWhenEnabled() {
+        setServiceProperties();
+        runner.enableControllerService(service);
+
+        assertEquals(0, service.getPoolStatistics().getActive());
+        assertEquals(0, service.getPoolStatistics().getIdle());
+
+        runner.disableControllerService(service);
+    }
+
+    @Test
+    public void testConfigurationKeyFollowsConfiguration() {
+        setServiceProperties();
+        runner.enableControllerService(service);
+        String key = service.getConfigurationKey();
+        runner.disableControllerService(service);
+
+        runner.setProperty(service, StardogControllerService.PASSWORD, "changed");
+        runner.enableControllerService(service);
+        String changedKey = service.getConfigurationKey();
+        runner.disableControllerService(service);
+
+        assertNotEquals(key, changedKey);
+        assertFalse(changedKey.contains("changed"));
+    }
+
     @Test
     public void testProcessorValidation() {
         runner.setProperty(TestControllerServiceProcessor.CLIENT_SERVICE, CONTROLLER_SERVICE_NAME);